@@ -0,0 +1,52 @@
+package com.interpreters.merlin;
+
+import java.util.List;
+
+public class Chunk {
+
+    static class ClassInfo {
+        final String name;
+        final List<String> methods;
+        final int constructor;
+
+        ClassInfo(String name, List<String> methods, int constructor) {
+            this.name = name;
+            this.methods = methods;
+            this.constructor = constructor;
+        }
+    }
+
+    final String name;
+    final Expr.FunctionExpr description;
+    final boolean method;
+
+    final int[] code;
+    /// tokens[i] is the token reported for a runtime error of the instruction starting at i
+    final Token[] tokens;
+    final Object[] constants;
+
+    final int maxLocals;
+    final int maxStack;
+
+    Chunk(String name, Expr.FunctionExpr description, boolean method,
+            int[] code, Token[] tokens, Object[] constants, int maxLocals, int maxStack) {
+        this.name = name;
+        this.description = description;
+        this.method = method;
+        this.code = code;
+        this.tokens = tokens;
+        this.constants = constants;
+        this.maxLocals = maxLocals;
+        this.maxStack = maxStack;
+    }
+
+    public int arity() {
+        return description.parameters.size();
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? "<chunk '" + name + "'>" : "<script>";
+    }
+
+}
@@ -0,0 +1,397 @@
+package com.interpreters.merlin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/// Minimal writer of JVM class files for the JIT. Classes are emitted in version 49
+/// so the verifier infers frame types itself and no StackMapTable is needed.
+final class ClassWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ACONST_NULL = 1, ICONST_0 = 3, LCONST_0 = 9, DCONST_0 = 14, BIPUSH = 16, SIPUSH = 17, LDC = 18, LDC_W = 19, LDC2_W = 20;
+    static final int LLOAD = 22, DLOAD = 24, ALOAD = 25, LSTORE = 55, DSTORE = 57, ASTORE = 58;
+    static final int AALOAD = 50, AASTORE = 83, POP = 87, POP2 = 88, DUP = 89, DUP_X1 = 90, DUP_X2 = 91, SWAP = 95;
+    static final int LADD = 97, DADD = 99, LSUB = 101, DSUB = 103, LMUL = 105, DMUL = 107, DDIV = 111, LREM = 113;
+    static final int LNEG = 117, DNEG = 119, LSHL = 121, LSHR = 123, LAND = 127, LOR = 129, LXOR = 131, L2I = 136;
+    static final int LCMP = 148, DCMPL = 151, DCMPG = 152;
+    static final int IFEQ = 153, IFNE = 154, IFLT = 155, IFGE = 156, IFGT = 157, IFLE = 158;
+    static final int GOTO = 167, ARETURN = 176, RETURN = 177;
+    static final int GETSTATIC = 178, PUTSTATIC = 179, GETFIELD = 180, PUTFIELD = 181;
+    static final int INVOKEVIRTUAL = 182, INVOKESPECIAL = 183, INVOKESTATIC = 184, INVOKEINTERFACE = 185;
+    static final int NEW = 187, ANEWARRAY = 189, ATHROW = 191, CHECKCAST = 192, INSTANCEOF = 193, WIDE = 196, IFNULL = 198, IFNONNULL = 199;
+
+    private static final int CONSTANT_UTF8 = 1, CONSTANT_LONG = 5, CONSTANT_DOUBLE = 6, CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8, CONSTANT_FIELDREF = 9, CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11, CONSTANT_NAME_AND_TYPE = 12;
+
+    /// thrown when the generated code does not fit the limits of the class file format
+    static class TooLarge extends RuntimeException {
+        TooLarge() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final String name;
+    private final String superName;
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolSize = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+
+    ClassWriter(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void field(int access, String fieldName, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(fieldName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    Method method(int access, String methodName, String descriptor, int arguments) {
+        Method method = new Method(access, methodName, descriptor, arguments);
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toByteArray() {
+        int thisClass = classRef(name), superClass = classRef(superName), code = utf8("Code");
+        for (Method method : methods) method.prepare();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) out.write(field);
+            out.writeShort(methods.size());
+            for (Method method : methods) method.write(out, code);
+            out.writeShort(0);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return bytes.toByteArray();
+    }
+
+    /// constant pool
+
+    int utf8(String value) {
+        Integer index = entries.get("U" + value);
+        if (index != null) return index;
+        try {
+            poolOut.writeByte(CONSTANT_UTF8);
+            poolOut.writeUTF(value);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return add("U" + value, 1);
+    }
+
+    int classRef(String internalName) {
+        return entry(CONSTANT_CLASS, "C" + internalName, utf8(internalName), -1);
+    }
+
+    int string(String value) {
+        return entry(CONSTANT_STRING, "S" + value, utf8(value), -1);
+    }
+
+    int longConstant(long value) {
+        Integer index = entries.get("J" + value);
+        if (index != null) return index;
+        try {
+            poolOut.writeByte(CONSTANT_LONG);
+            poolOut.writeLong(value);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return add("J" + value, 2);
+    }
+
+    int doubleConstant(double value) {
+        String key = "D" + Double.doubleToRawLongBits(value);
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            poolOut.writeByte(CONSTANT_DOUBLE);
+            poolOut.writeDouble(value);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return add(key, 2);
+    }
+
+    private int nameAndType(String memberName, String descriptor) {
+        return entry(CONSTANT_NAME_AND_TYPE, "N" + memberName + ":" + descriptor, utf8(memberName), utf8(descriptor));
+    }
+
+    int member(int tag, String owner, String memberName, String descriptor) {
+        return entry(tag, "M" + tag + owner + "." + memberName + ":" + descriptor,
+            classRef(owner), nameAndType(memberName, descriptor));
+    }
+
+    private int entry(int tag, String key, int first, int second) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            poolOut.writeByte(tag);
+            poolOut.writeShort(first);
+            if (second >= 0) poolOut.writeShort(second);
+        }
+        catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return add(key, 1);
+    }
+
+    private int add(String key, int slots) {
+        int index = poolSize;
+        poolSize += slots;
+        if (poolSize > 0xFFFF) throw new TooLarge();
+        entries.put(key, index);
+        return index;
+    }
+
+    /// branch target, the operand stack depth is recorded by the first jump to it
+    static final class Label {
+        private int position = -1;
+        private int stack = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    /// code of a single method, keeps track of the operand stack depth and the locals in use
+    final class Method {
+        private final int access;
+        private final int nameIndex;
+        private final int descriptorIndex;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private byte[] bytes;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+        private boolean reachable = true;
+
+        private Method(int access, String methodName, String descriptor, int arguments) {
+            this.access = access;
+            this.nameIndex = utf8(methodName);
+            this.descriptorIndex = utf8(descriptor);
+            this.maxLocals = arguments;
+        }
+
+        boolean isReachable() {
+            return reachable;
+        }
+
+        void op(int opcode) {
+            code.write(opcode);
+            switch (opcode) {
+                case ACONST_NULL: case DUP: case DUP_X1: case DUP_X2: grow(1); break;
+                case LCONST_0: case DCONST_0: grow(2); break;
+                case AALOAD: case POP: case L2I: grow(-1); break;
+                case POP2: case LADD: case DADD: case LSUB: case DSUB: case LMUL: case DMUL: case DDIV: case LREM:
+                case LAND: case LOR: case LXOR: grow(-2); break;
+                case LSHL: case LSHR: grow(-1); break;
+                case LCMP: case DCMPL: case DCMPG: case AASTORE: grow(-3); break;
+                case ARETURN: case ATHROW: grow(-1); reachable = false; break;
+                case RETURN: reachable = false; break;
+                default: break;
+            }
+        }
+
+        void iconst(int value) {
+            if (value >= -1 && value <= 5) code.write(ICONST_0 + value);
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+            }
+            else {
+                code.write(SIPUSH);
+                writeShort(value);
+            }
+            grow(1);
+        }
+
+        void ldc(int index, int size) {
+            if (size == 2) {
+                code.write(LDC2_W);
+                writeShort(index);
+            }
+            else if (index < 256) {
+                code.write(LDC);
+                code.write(index);
+            }
+            else {
+                code.write(LDC_W);
+                writeShort(index);
+            }
+            grow(size);
+        }
+
+        void local(int opcode, int index) {
+            int size = opcode == LLOAD || opcode == DLOAD || opcode == LSTORE || opcode == DSTORE ? 2 : 1;
+            if (index > 0xFF) {
+                code.write(WIDE);
+                code.write(opcode);
+                writeShort(index);
+            }
+            else {
+                code.write(opcode);
+                code.write(index);
+            }
+            grow(opcode <= ALOAD ? size : -size);
+            maxLocals = Math.max(maxLocals, index + size);
+        }
+
+        void type(int opcode, String internalName) {
+            code.write(opcode);
+            writeShort(classRef(internalName));
+            if (opcode == NEW) grow(1);
+        }
+
+        void field(int opcode, String owner, String fieldName, String descriptor) {
+            code.write(opcode);
+            writeShort(member(CONSTANT_FIELDREF, owner, fieldName, descriptor));
+            int size = descriptor.equals("J") || descriptor.equals("D") ? 2 : 1;
+            switch (opcode) {
+                case GETSTATIC: grow(size); break;
+                case PUTSTATIC: grow(-size); break;
+                case GETFIELD: grow(size - 1); break;
+                default: grow(-size - 1);
+            }
+        }
+
+        void invoke(int opcode, String owner, String methodName, String descriptor) {
+            boolean isInterface = opcode == INVOKEINTERFACE;
+            code.write(opcode);
+            writeShort(member(isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF,
+                owner, methodName, descriptor));
+            int arguments = argumentSlots(descriptor) + (opcode == INVOKESTATIC ? 0 : 1);
+            if (isInterface) {
+                code.write(arguments);
+                code.write(0);
+            }
+            grow(returnSlots(descriptor) - arguments);
+        }
+
+        void jump(int opcode, Label label) {
+            int at = code.size();
+            code.write(opcode);
+            writeShort(0);
+            label.jumps.add(at);
+            if (opcode == IFNULL || opcode == IFNONNULL || (opcode >= IFEQ && opcode <= IFLE)) grow(-1);
+            if (label.stack < 0) label.stack = stack;
+            if (opcode == GOTO) reachable = false;
+        }
+
+        void bind(Label label) {
+            label.position = code.size();
+            labels.add(label);
+            if (!reachable) {
+                stack = Math.max(label.stack, 0);
+                reachable = true;
+            }
+            else if (label.stack < 0) label.stack = stack;
+        }
+
+        int newLocal(int size) {
+            maxLocals += size;
+            return maxLocals - size;
+        }
+
+        private void grow(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void writeShort(int value) {
+            code.write(value >> 8);
+            code.write(value);
+        }
+
+        private void prepare() {
+            bytes = code.toByteArray();
+            if (bytes.length > Short.MAX_VALUE) throw new TooLarge();
+            for (Label label : labels) {
+                for (int at : label.jumps) {
+                    int offset = label.position - at;
+                    bytes[at + 1] = (byte) (offset >> 8);
+                    bytes[at + 2] = (byte) offset;
+                }
+            }
+        }
+
+        private void write(DataOutputStream out, int code) throws IOException {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(code);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    /// slots taken by the arguments of a method descriptor
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; ++i) {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') slots += 2;
+            else {
+                ++slots;
+                while (descriptor.charAt(i) == '[') ++i;
+                if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            }
+        }
+        return slots;
+    }
+
+    private static int returnSlots(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        if (c == 'V') return 0;
+        return c == 'J' || c == 'D' ? 2 : 1;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.interpreters.merlin;
+
+import com.interpreters.merlin.Expr.FunctionExpr;
+
+/// Base of the classes the JIT generates. A unit is either a whole function body or a
+/// loop of a function that got hot while it was interpreted (on-stack replacement).
+public abstract class CompiledCode {
+
+    /// returned by a loop unit that ran to its end instead of executing 'return'
+    static final Object COMPLETED = new Object();
+
+    FunctionExpr function;
+    /// the FunctionExpr or the loop statement holding this code
+    Object owner;
+    private boolean invalid = false;
+
+    /// a function unit gets the closure, the list of arguments and the receiver of a method,
+    /// a loop unit gets the environment of the loop and the iterable of a for-in loop
+    abstract Object run(Interpreter interpreter, Environment environment, Object argument, Object receiver);
+
+    /// a type guard failed, the owner goes back to the interpreter and may be compiled again later
+    void invalidate() {
+        if (invalid) return;
+        invalid = true;
+        if (owner instanceof FunctionExpr) {
+            if (function.compiled == this) function.compiled = null;
+        }
+        else if (owner instanceof Stmt.WHILEStmt) {
+            if (((Stmt.WHILEStmt) owner).compiled == this) ((Stmt.WHILEStmt) owner).compiled = null;
+        }
+        else if (owner instanceof Stmt.FORStmt) {
+            if (((Stmt.FORStmt) owner).compiled == this) ((Stmt.FORStmt) owner).compiled = null;
+        }
+        else if (owner instanceof Stmt.ForEachStmt) {
+            if (((Stmt.ForEachStmt) owner).compiled == this) ((Stmt.ForEachStmt) owner).compiled = null;
+        }
+        Jit.deoptimized(function);
+    }
+
+}
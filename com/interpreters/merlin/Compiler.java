@@ -0,0 +1,835 @@
+package com.interpreters.merlin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.interpreters.merlin.Expr.AssignExpr;
+import com.interpreters.merlin.Expr.BinaryExpr;
+import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
+import com.interpreters.merlin.Expr.FunctionExpr;
+import com.interpreters.merlin.Expr.GetExpr;
+import com.interpreters.merlin.Expr.GroupingExpr;
+import com.interpreters.merlin.Expr.ListComprExpr;
+import com.interpreters.merlin.Expr.ListExpr;
+import com.interpreters.merlin.Expr.ListGetExpr;
+import com.interpreters.merlin.Expr.ListSetExpr;
+import com.interpreters.merlin.Expr.LiteralExpr;
+import com.interpreters.merlin.Expr.LogicExpr;
+import com.interpreters.merlin.Expr.SetExpr;
+import com.interpreters.merlin.Expr.SliceExpr;
+import com.interpreters.merlin.Expr.SuperCallExpr;
+import com.interpreters.merlin.Expr.SuperExpr;
+import com.interpreters.merlin.Expr.TernaryExpr;
+import com.interpreters.merlin.Expr.ThisExpr;
+import com.interpreters.merlin.Expr.UnaryExpr;
+import com.interpreters.merlin.Expr.VariableExpr;
+import com.interpreters.merlin.Stmt.BlockStmt;
+import com.interpreters.merlin.Stmt.ClassDeclStmt;
+import com.interpreters.merlin.Stmt.EnumStmt;
+import com.interpreters.merlin.Stmt.ExpressionStmt;
+import com.interpreters.merlin.Stmt.FORStmt;
+import com.interpreters.merlin.Stmt.ForEachStmt;
+import com.interpreters.merlin.Stmt.FunDeclStmt;
+import com.interpreters.merlin.Stmt.IFStmt;
+import com.interpreters.merlin.Stmt.ImportStmt;
+import com.interpreters.merlin.Stmt.RETURNStmt;
+import com.interpreters.merlin.Stmt.VarDeclStmt;
+import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
+
+import static com.interpreters.merlin.OpCode.*;
+
+/// Lowers the resolved AST into Chunks for the VM.
+/// Locals live in frame registers. Variables captured by an inner function live in a
+/// heap environment created each time their scope is entered, like the tree-walker's
+/// Environment. Captured variables are found by a first, discarded compilation pass.
+public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private static class Local {
+        final Token key;
+        final int register;
+        final int slot;
+
+        Local(Token key, int register, int slot) {
+            this.key = key;
+            this.register = register;
+            this.slot = slot;
+        }
+    }
+
+    private static class Scope {
+        final Map<String, Local> locals = new HashMap<>();
+        final boolean global;
+        final boolean env;
+        final int registers;
+        int size = 0;
+        int sizeOperand = -1;
+
+        Scope(boolean global, boolean env, int registers) {
+            this.global = global;
+            this.env = env;
+            this.registers = registers;
+        }
+    }
+
+    private enum RefType {
+        GLOBAL, REGISTER, ENV, NIL
+    }
+
+    private static class Ref {
+        final RefType type;
+        final int a, b;
+
+        Ref(RefType type, int a, int b) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    private class FunctionState {
+        final FunctionState enclosing;
+        final String name;
+        final FunctionExpr description;
+        final boolean method;
+        final List<Scope> scopes = new ArrayList<>();
+
+        int[] code = new int[64];
+        Token[] tokens = new Token[64];
+        int count = 0;
+        final List<Object> constants = new ArrayList<>();
+
+        int registers = 0, maxRegisters = 0;
+        int depth = 0, maxDepth = 0;
+
+        FunctionState(FunctionState enclosing, String name, FunctionExpr description, boolean method) {
+            this.enclosing = enclosing;
+            this.name = name;
+            this.description = description;
+            this.method = method;
+        }
+
+        Chunk finish() {
+            return new Chunk(name, description, method,
+                Arrays.copyOf(code, count), Arrays.copyOf(tokens, count), constants.toArray(),
+                maxRegisters, maxDepth);
+        }
+    }
+
+    private final Set<Token> captured;
+    private final boolean discovery;
+    private FunctionState current;
+
+    private Compiler(Set<Token> captured, boolean discovery) {
+        this.captured = captured;
+        this.discovery = discovery;
+    }
+
+    public static Chunk compile(List<Stmt> statements) {
+        Set<Token> captured = new HashSet<>();
+        new Compiler(captured, true).script(statements);
+        return new Compiler(captured, false).script(statements);
+    }
+
+    private Chunk script(List<Stmt> statements) {
+        current = new FunctionState(null, null, null, false);
+        current.scopes.add(new Scope(true, false, 0));
+        for (Stmt stmt : statements) compile(stmt);
+        emit(null, 1, NIL);
+        emit(null, -1, RETURN);
+        return current.finish();
+    }
+
+    private Chunk function(String name, FunctionExpr description, boolean method) {
+        current = new FunctionState(current, name, description, method);
+
+        boolean env = method && captured.contains(description.paren);
+        for (Token parameter : description.parameters) env |= captured.contains(parameter);
+        beginScope(env || declaresCaptured(description.body));
+
+        if (method) parameter(description.paren, "this");
+        for (Token parameter : description.parameters) parameter(parameter, parameter.lexeme);
+        /// the call only sets up the frame, the body runs when the generator is advanced
+        if (description.generator) {
+            emit(description.paren, 1, GENERATOR);
+            emit(null, -1, RETURN);
+        }
+        for (Stmt stmt : description.body) compile(stmt);
+
+        endScope();
+        emit(null, 1, NIL);
+        emit(null, -1, RETURN);
+
+        Chunk chunk = current.finish();
+        current = current.enclosing;
+        return chunk;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    /// a part of an expression that can be left out, nil then
+    private void optional(Expr expr) {
+        if (expr != null) compile(expr);
+        else emit(null, 1, NIL);
+    }
+
+    /// code emission
+
+    private int emit(Token token, int effect, int op, int... operands) {
+        FunctionState state = current;
+        int start = state.count;
+        int size = start + 1 + operands.length;
+        if (size > state.code.length) {
+            state.code = Arrays.copyOf(state.code, Math.max(size, state.code.length * 2));
+            state.tokens = Arrays.copyOf(state.tokens, state.code.length);
+        }
+        state.code[state.count] = op;
+        state.tokens[state.count++] = token;
+        for (int operand : operands) state.code[state.count++] = operand;
+
+        state.depth += effect;
+        if (state.depth > state.maxDepth) state.maxDepth = state.depth;
+        return start;
+    }
+
+    private void patch(int operand) {
+        current.code[operand] = current.count;
+    }
+
+    private int constant(Object value) {
+        List<Object> constants = current.constants;
+        if (value instanceof String || value instanceof Double || value instanceof Long) {
+            int index = constants.indexOf(value);
+            if (index != -1) return index;
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    /// scopes and variables
+
+    private void beginScope(boolean env) {
+        Scope scope = new Scope(false, env && !discovery, current.registers);
+        current.scopes.add(scope);
+        if (scope.env) scope.sizeOperand = emit(null, 0, PUSH_ENV, 0) + 1;
+    }
+
+    private void endScope() {
+        Scope scope = current.scopes.remove(current.scopes.size() - 1);
+        if (scope.env) {
+            current.code[scope.sizeOperand] = scope.size;
+            emit(null, 0, POP_ENV);
+        }
+        current.registers = scope.registers;
+    }
+
+    private Scope peek() {
+        return current.scopes.get(current.scopes.size() - 1);
+    }
+
+    private int allocate() {
+        int register = current.registers++;
+        if (current.registers > current.maxRegisters) current.maxRegisters = current.registers;
+        return register;
+    }
+
+    private boolean declaresCaptured(List<Stmt> statements) {
+        for (Stmt stmt : statements) {
+            if (stmt instanceof VarDeclStmt) {
+                for (Token name : ((VarDeclStmt) stmt).names) if (captured.contains(name)) return true;
+            }
+            else if (stmt instanceof FunDeclStmt) {
+                if (captured.contains(((FunDeclStmt) stmt).name)) return true;
+            }
+            else if (stmt instanceof ClassDeclStmt) {
+                if (captured.contains(((ClassDeclStmt) stmt).name)) return true;
+            }
+            else if (stmt instanceof ImportStmt) {
+                if (captured.contains(((ImportStmt) stmt).alias)) return true;
+            }
+            else if (stmt instanceof EnumStmt) {
+                if (captured.contains(((EnumStmt) stmt).name)) return true;
+            }
+            else if (stmt instanceof FORStmt) {
+                /// 'for (var i = ...; ...)' declares i in the block the parser wraps the loop into
+                Stmt initializer = ((FORStmt) stmt).initializer;
+                if (initializer != null && declaresCaptured(Arrays.asList(initializer))) return true;
+            }
+        }
+        return false;
+    }
+
+    private Local declare(Token key, String name) {
+        Scope scope = peek();
+        if (scope.global) return null;
+
+        Local local;
+        if (scope.env && captured.contains(key)) local = new Local(key, -1, scope.size++);
+        else local = new Local(key, allocate(), -1);
+        scope.locals.put(name, local);
+        return local;
+    }
+
+    private void parameter(Token key, String name) {
+        Scope scope = peek();
+        int register = allocate();
+        Local local = new Local(key, register, -1);
+        if (scope.env && captured.contains(key)) {
+            local = new Local(key, register, scope.size++);
+            emit(null, 1, GET_LOCAL, register);
+            emit(null, 0, SET_ENV, 0, local.slot);
+            emit(null, -1, POP);
+        }
+        scope.locals.put(name, local);
+    }
+
+    /// stores the value on top of the stack into a freshly declared variable
+    private void define(Local local, Token name) {
+        if (local == null) emit(name, -1, DEFINE_GLOBAL, constant(name.lexeme));
+        else {
+            if (local.slot >= 0) {
+                emit(name, 0, SET_ENV, 0, local.slot);
+                emit(name, -1, POP);
+            }
+            else emit(name, -1, STORE_LOCAL, local.register);
+        }
+    }
+
+    private Ref resolve(String name) {
+        int depth = 0;
+        for (FunctionState state = current; state != null; state = state.enclosing) {
+            for (int i = state.scopes.size() - 1; i >= 0; --i) {
+                Scope scope = state.scopes.get(i);
+                Local local = scope.locals.get(name);
+                if (local != null) {
+                    if (discovery && state != current && local.key != null) captured.add(local.key);
+                    if (local.slot >= 0) return new Ref(RefType.ENV, depth, local.slot);
+                    if (local.register < 0) return new Ref(RefType.NIL, 0, 0);
+                    if (state == current) return new Ref(RefType.REGISTER, local.register, 0);
+                    /// the discovery pass doesn't know yet what inner functions capture
+                    if (!discovery) throw new IllegalStateException("Captured variable '" + name + "' was left in a register.");
+                    return new Ref(RefType.NIL, 0, 0);
+                }
+                if (scope.env) ++depth;
+            }
+        }
+        return new Ref(RefType.GLOBAL, constant(name), 0);
+    }
+
+    private void load(Ref ref, Token token) {
+        switch (ref.type) {
+            case GLOBAL: emit(token, 1, GET_GLOBAL, ref.a); break;
+            case REGISTER: emit(token, 1, GET_LOCAL, ref.a); break;
+            case ENV: emit(token, 1, GET_ENV, ref.a, ref.b); break;
+            case NIL: emit(token, 1, NIL); break;
+        }
+    }
+
+    private void store(Ref ref, Token token) {
+        switch (ref.type) {
+            case GLOBAL: emit(token, 0, SET_GLOBAL, ref.a); break;
+            case REGISTER: emit(token, 0, SET_LOCAL, ref.a); break;
+            case ENV: emit(token, 0, SET_ENV, ref.a, ref.b); break;
+            case NIL: break;
+        }
+    }
+
+    /// statements
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        discard(stmt.expression);
+        return null;
+    }
+
+    /// an expression whose value isn't used: an assignment to a register stores the value
+    /// without leaving a copy of it on the stack
+    private void discard(Expr expr) {
+        Token name = null;
+        if (expr instanceof AssignExpr) name = ((AssignExpr) expr).object.name;
+        else if (expr instanceof CompoundExpr && ((CompoundExpr) expr).target instanceof VariableExpr)
+            name = ((VariableExpr) ((CompoundExpr) expr).target).name;
+
+        Ref ref = name == null ? null : resolve(name.lexeme);
+        if (ref == null || ref.type != RefType.REGISTER) {
+            compile(expr);
+            emit(null, -1, POP);
+            return;
+        }
+
+        if (expr instanceof AssignExpr) compile(((AssignExpr) expr).value);
+        else {
+            CompoundExpr compound = (CompoundExpr) expr;
+            load(ref, name);
+            compile(compound.value);
+            emit(compound.operation, -1, binaryOp(compound.operation));
+        }
+        emit(name, -1, STORE_LOCAL, ref.a);
+    }
+
+    /// the condition and a jump taken when it's false, returns the operand of the target; a
+    /// comparison jumps on its own result without making a boolean of it
+    private int jumpIfFalse(Expr condition) {
+        while (condition instanceof GroupingExpr) condition = ((GroupingExpr) condition).expression;
+        if (condition instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) condition;
+            int op = -1, swap = 0;
+            switch (binary.operation.type) {
+                case LESS: op = JUMP_IF_NOT_LESS; break;
+                case GREATER: op = JUMP_IF_NOT_LESS; swap = 1; break;
+                case LESS_EQUAL: op = JUMP_IF_LESS; swap = 1; break;
+                case GREATER_EQUAL: op = JUMP_IF_LESS; break;
+                default: break;
+            }
+            if (op != -1) {
+                compile(binary.left);
+                compile(binary.right);
+                return emit(binary.operation, -2, op, swap, 0) + 2;
+            }
+        }
+        compile(condition);
+        return emit(null, -1, JUMP_IF_FALSE, 0) + 1;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        beginScope(declaresCaptured(stmt.statements));
+        for (Stmt statement : stmt.statements) compile(statement);
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitIFStmt(IFStmt stmt) {
+        int elseJump = jumpIfFalse(stmt.condition);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            int endJump = emit(null, 0, JUMP, 0) + 1;
+            patch(elseJump);
+            compile(stmt.elseBranch);
+            patch(endJump);
+        }
+        else patch(elseJump);
+        return null;
+    }
+
+    @Override
+    public Void visitWHILEStmt(WHILEStmt stmt) {
+        int loop = current.count;
+        int exitJump = jumpIfFalse(stmt.condition);
+        compile(stmt.body);
+        emit(null, 0, JUMP, loop);
+        patch(exitJump);
+        return null;
+    }
+
+    @Override
+    public Void visitFORStmt(FORStmt stmt) {
+        if (stmt.initializer != null) compile(stmt.initializer);
+        int loop = current.count;
+        int exitJump = jumpIfFalse(stmt.condition);
+        compile(stmt.body);
+        if (stmt.increment != null) discard(stmt.increment);
+        emit(null, 0, JUMP, loop);
+        patch(exitJump);
+        return null;
+    }
+
+    @Override
+    public Void visitRETURNStmt(RETURNStmt stmt) {
+        if (stmt.value != null) compile(stmt.value);
+        else emit(null, 1, NIL);
+        emit(stmt.keyword, -1, RETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(YieldStmt stmt) {
+        if (stmt.value != null) compile(stmt.value);
+        else emit(null, 1, NIL);
+        emit(stmt.keyword, -1, YIELD);
+        return null;
+    }
+
+    @Override
+    public Void visitForEachStmt(ForEachStmt stmt) {
+        beginScope(captured.contains(stmt.iter.name));
+        Local iter = declare(stmt.iter.name, stmt.iter.name.lexeme);
+        int iterable = allocate();
+
+        compile(stmt.iterable);
+        emit(stmt.in, 0, ITER_INIT, 0);
+        emit(null, -1, STORE_LOCAL, iterable);
+
+        int loop = current.count;
+        int exitJump = next(iterable, iter, stmt.iter.name);
+        compile(stmt.body);
+        emit(null, 0, JUMP, loop);
+        patch(exitJump);
+
+        endScope();
+        return null;
+    }
+
+    /// the next element into the loop variable, returns the operand of the jump taken at the end
+    private int next(int iterable, Local iter, Token name) {
+        if (iter.slot < 0) return emit(null, 0, ITER_NEXT, iterable, 0, iter.register) + 2;
+        int exitJump = emit(null, 1, ITER_NEXT, iterable, 0, -1) + 2;
+        define(iter, name);
+        return exitJump;
+    }
+
+    @Override
+    public Void visitVarDeclStmt(VarDeclStmt stmt) {
+        for (int i = 0, end = stmt.names.size(); i < end; ++i) {
+            if (stmt.initializers.get(i) != null) compile(stmt.initializers.get(i));
+            else emit(null, 1, NIL);
+            Token name = stmt.names.get(i);
+            define(declare(name, name.lexeme), name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt(FunDeclStmt stmt) {
+        Chunk chunk = function(stmt.name.lexeme, stmt.description, false);
+        emit(stmt.name, 1, CLOSURE, constant(chunk));
+        define(declare(stmt.name, stmt.name.lexeme), stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitClassDeclStmt(ClassDeclStmt stmt) {
+        boolean subclass = stmt.superclass != null;
+        if (subclass) {
+            compile(stmt.superclass);
+            emit(stmt.superclass.name, 0, CHECK_SUPERCLASS);
+        }
+
+        emit(null, 1, NIL);
+        define(declare(stmt.name, stmt.name.lexeme), stmt.name);
+
+        if (subclass) {
+            beginScope(captured.contains(stmt.superclass.name));
+            define(declare(stmt.superclass.name, "super"), stmt.superclass.name);
+            load(resolve("super"), stmt.superclass.name);
+        }
+        else emit(null, 1, NIL);
+
+        /// method names are visible inside methods, but they are never assigned
+        Scope methods = new Scope(false, false, current.registers);
+        current.scopes.add(methods);
+        List<String> names = new ArrayList<>();
+        int constructor = -1;
+        for (FunDeclStmt method : stmt.methods) {
+            methods.locals.put(method.name.lexeme, new Local(null, -1, -1));
+            Chunk chunk = function(method.name.lexeme, method.description, true);
+            emit(method.name, 1, CLOSURE, constant(chunk));
+            if (method.name.lexeme.equals("init")) constructor = names.size();
+            names.add(method.name.lexeme);
+        }
+        current.scopes.remove(current.scopes.size() - 1);
+
+        Chunk.ClassInfo info = new Chunk.ClassInfo(stmt.name.lexeme, names, constructor);
+        emit(stmt.name, -names.size(), CLASS, constant(info));
+        store(resolve(stmt.name.lexeme), stmt.name);
+        emit(null, -1, POP);
+
+        if (subclass) endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        emit(stmt.keyword, 1, IMPORT, constant(stmt));
+        define(declare(stmt.alias, stmt.alias.lexeme), stmt.alias);
+        return null;
+    }
+
+    @Override
+    public Void visitEnumStmt(EnumStmt stmt) {
+        emit(stmt.name, 1, ENUM, constant(stmt.consts));
+        define(declare(stmt.name, stmt.name.lexeme), stmt.name);
+        return null;
+    }
+
+    /// expressions
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        if (expr.value == null) emit(null, 1, NIL);
+        else if (expr.value.equals(true)) emit(null, 1, TRUE);
+        else if (expr.value.equals(false)) emit(null, 1, FALSE);
+        else emit(null, 1, CONSTANT, constant(expr.value));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        compile(expr.right);
+        int op;
+        switch (expr.operation.type) {
+            case BANG: op = NOT; break;
+            case TILDE: op = COMPLEMENT; break;
+            default: op = NEGATE;
+        }
+        emit(expr.operation, 0, op);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        compile(expr.left);
+        compile(expr.right);
+        emit(expr.operation, -1, binaryOp(expr.operation));
+        return null;
+    }
+
+    private static int binaryOp(Token operation) {
+        int op;
+        switch (operation.type) {
+            case PLUS: op = ADD; break;
+            case MINUS: op = SUBTRACT; break;
+            case STAR: op = MULTIPLY; break;
+            case SLASH: op = DIVIDE; break;
+            case PERCENT: op = MODULO; break;
+            case BACKSLASH: op = INTEGER_DIVIDE; break;
+            case AMPERSAND:
+            case PIPE:
+            case CARET:
+            case LESS_LESS:
+            case GREATER_GREATER:
+                op = BITWISE; break;
+            case LESS: op = LESS; break;
+            case LESS_EQUAL: op = LESS_EQUAL; break;
+            case GREATER: op = GREATER; break;
+            case GREATER_EQUAL: op = GREATER_EQUAL; break;
+            case EQUAL_EQUAL: op = EQUAL; break;
+            case BANG_EQUAL: op = NOT_EQUAL; break;
+            default:
+                throw new RuntimeError(operation, "Unknown binary operator.");
+        }
+        return op;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        load(resolve(expr.name.lexeme), expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr expr) {
+        compile(expr.value);
+        store(resolve(expr.object.name.lexeme), expr.object.name);
+        return null;
+    }
+
+    /// the target's object and index are evaluated once and duplicated for the read
+    @Override
+    public Void visitCompoundExpr(CompoundExpr expr) {
+        if (expr.target instanceof VariableExpr) {
+            Token name = ((VariableExpr) expr.target).name;
+            load(resolve(name.lexeme), name);
+            compile(expr.value);
+            emit(expr.operation, -1, binaryOp(expr.operation));
+            store(resolve(name.lexeme), name);
+        }
+        else if (expr.target instanceof GetExpr) {
+            GetExpr getter = (GetExpr) expr.target;
+            compile(getter.object);
+            emit(getter.property, 0, CHECK_INSTANCE);
+            emit(getter.property, 1, DUP);
+            emit(getter.property, 0, GET_PROPERTY, constant(getter.cache));
+            compile(expr.value);
+            emit(expr.operation, -1, binaryOp(expr.operation));
+            emit(getter.property, -1, SET_PROPERTY, constant(expr.cache));
+        }
+        else {
+            ListGetExpr getter = (ListGetExpr) expr.target;
+            compile(getter.object);
+            emit(getter.bracket, 0, CHECK_LIST);
+            compile(getter.index);
+            emit(getter.bracket, 2, DUP2);
+            emit(getter.bracket, -1, GET_INDEX);
+            compile(expr.value);
+            emit(expr.operation, -1, binaryOp(expr.operation));
+            emit(getter.bracket, -2, SET_INDEX);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicExpr(LogicExpr expr) {
+        compile(expr.left);
+        int op = expr.operation.type == TokenType.OR ? JUMP_IF_TRUE_OR_POP : JUMP_IF_FALSE_OR_POP;
+        int endJump = emit(null, -1, op, 0) + 1;
+        compile(expr.right);
+        patch(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        int count = expr.arguments.size();
+        if (expr.callee instanceof GetExpr) {
+            GetExpr getter = (GetExpr) expr.callee;
+            compile(getter.object);
+            emit(expr.paren, 1, GET_METHOD, constant(getter.cache), constant(expr));
+            for (Expr argument : expr.arguments) compile(argument);
+            emit(expr.paren, -count - 1, INVOKE, count);
+            return null;
+        }
+
+        compile(expr.callee);
+        emit(expr.paren, 0, CHECK_CALL, constant(expr));
+        for (Expr argument : expr.arguments) compile(argument);
+        emit(expr.paren, -count, CALL, count);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionExpr(FunctionExpr expr) {
+        Chunk chunk = function(null, expr, false);
+        emit(expr.paren, 1, CLOSURE, constant(chunk));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        compile(expr.object);
+        emit(expr.property, 0, GET_PROPERTY, constant(expr.cache));
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(SetExpr expr) {
+        compile(expr.object);
+        emit(expr.property, 0, CHECK_INSTANCE);
+        compile(expr.value);
+        emit(expr.property, -1, SET_PROPERTY, constant(expr.cache));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(ThisExpr expr) {
+        load(resolve("this"), expr.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(SuperExpr expr) {
+        load(resolve("super"), expr.keyword);
+        load(resolve("this"), expr.keyword);
+        emit(expr.property, -1, SUPER_GET, constant(expr.property));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperCallExpr(SuperCallExpr expr) {
+        int count = expr.arguments.size();
+        load(resolve("super"), expr.keyword);
+        int skipJump = emit(expr.keyword, 0, SUPER_CHECK, count, 0) + 2;
+        load(resolve("this"), expr.keyword);
+        for (Expr argument : expr.arguments) compile(argument);
+        emit(expr.keyword, -count - 1, SUPER_CALL, count);
+        patch(skipJump);
+        return null;
+    }
+
+    @Override
+    public Void visitListExpr(ListExpr expr) {
+        for (Expr element : expr.elements) compile(element);
+        emit(expr.bracket, 1 - expr.elements.size(), LIST, expr.elements.size());
+        return null;
+    }
+
+    @Override
+    public Void visitListComprExpr(ListComprExpr expr) {
+        ForEachStmt loop = expr.forComprehension;
+        beginScope(captured.contains(loop.iter.name));
+        Local iter = declare(loop.iter.name, loop.iter.name.lexeme);
+        int iterable = allocate(), result = allocate();
+
+        compile(loop.iterable);
+        emit(loop.in, 0, ITER_INIT, 1);
+        emit(null, -1, STORE_LOCAL, iterable);
+        emit(expr.bracket, 1, LIST, 0);
+        emit(null, -1, STORE_LOCAL, result);
+
+        int start = current.count;
+        int exitJump = next(iterable, iter, loop.iter.name);
+        compile(expr.filter);
+        emit(null, -1, JUMP_IF_FALSE, start);
+        compile(expr.expr);
+        emit(null, -1, APPEND, result);
+        emit(null, 0, JUMP, start);
+        patch(exitJump);
+        emit(null, 1, GET_LOCAL, result);
+
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitListGetExpr(ListGetExpr expr) {
+        compile(expr.object);
+        /// GET_INDEX checks the object too, only an index that can fail has to come after it
+        if (!(expr.index instanceof VariableExpr || expr.index instanceof LiteralExpr))
+            emit(expr.bracket, 0, CHECK_INDEXABLE);
+        compile(expr.index);
+        emit(expr.bracket, -1, GET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitSliceExpr(SliceExpr expr) {
+        compile(expr.object);
+        optional(expr.start);
+        optional(expr.end);
+        optional(expr.step);
+        emit(expr.bracket, -3, SLICE);
+        return null;
+    }
+
+    @Override
+    public Void visitListSetExpr(ListSetExpr expr) {
+        compile(expr.getter.object);
+        emit(expr.getter.bracket, 0, CHECK_LIST);
+        compile(expr.getter.index);
+        compile(expr.value);
+        emit(expr.getter.bracket, -2, SET_INDEX);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(TernaryExpr expr) {
+        int elseJump = jumpIfFalse(expr.condition);
+        compile(expr.left);
+        int endJump = emit(null, 0, JUMP, 0) + 1;
+        current.depth -= 1;
+        patch(elseJump);
+        compile(expr.right);
+        patch(endJump);
+        return null;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.interpreters.merlin;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/// Elements of a list that only holds doubles, unboxed in a growable array. MerlinListInstance
+/// only ever stores doubles here, it switches to a generic list before anything else goes in.
+final class DoubleList extends AbstractList<Object> implements RandomAccess {
+
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private double[] values;
+    private int size;
+
+    DoubleList() {
+        this(new double[8], 0);
+    }
+
+    private DoubleList(double[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /// the elements as a DoubleList, null if one of them isn't a double
+    static DoubleList of(List<Object> elements) {
+        double[] values = new double[elements.size()];
+        for (int i = 0; i < values.length; ++i) {
+            Object element = elements.get(i);
+            if (!(element instanceof Double)) return null;
+            values[i] = (double) element;
+        }
+        return new DoubleList(values, values.length);
+    }
+
+    DoubleList concat(DoubleList other) {
+        double[] result = Arrays.copyOf(values, size + other.size);
+        System.arraycopy(other.values, 0, result, size, other.size);
+        return new DoubleList(result, result.length);
+    }
+
+    /// the elements at start, start + step, ... in an array of their own
+    DoubleList copy(int start, int step, int size) {
+        double[] result = new double[size];
+        for (int i = 0; i < size; ++i) result[i] = values[start + i * step];
+        return new DoubleList(result, size);
+    }
+
+    double getDouble(int index) {
+        return values[index];
+    }
+
+    void setDouble(int index, double value) {
+        values[index] = value;
+    }
+
+    void add(double value) {
+        if (size == values.length) values = Arrays.copyOf(values, Math.max(8, size * 2));
+        values[size++] = value;
+    }
+
+    /// Arrays.sort puts -0.0 before 0.0 where '<' takes them as equal, so with a -0.0 among
+    /// them the zeros are put back in the order they had
+    void sort() {
+        double[] zeros = null;
+        int count = 0;
+        for (int i = 0; i < size; ++i) {
+            if (Double.doubleToRawLongBits(values[i]) == NEGATIVE_ZERO) {
+                zeros = new double[size];
+                break;
+            }
+        }
+        if (zeros != null) for (int i = 0; i < size; ++i) if (values[i] == 0) zeros[count++] = values[i];
+
+        Arrays.sort(values, 0, size);
+        if (zeros == null) return;
+        for (int i = 0; i < size; ++i) {
+            if (values[i] == 0) {
+                System.arraycopy(zeros, 0, values, i, count);
+                return;
+            }
+        }
+    }
+
+    /// the first index of a value '==' to the given one, so NaN is never found
+    int indexOf(double value) {
+        for (int i = 0; i < size; ++i) if (values[i] == value) return i;
+        return -1;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        double previous = values[index];
+        values[index] = (double) element;
+        return previous;
+    }
+
+    @Override
+    public boolean add(Object element) {
+        add((double) element);
+        return true;
+    }
+
+    @Override
+    public Object remove(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        double previous = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        --size;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+}
@@ -3,19 +3,34 @@ package com.interpreters.merlin;
 import java.util.HashMap;
 import java.util.Map;
 
+/// Global and module scopes keep their values by name, local scopes are
+/// fixed-size frames indexed by the slots the Resolver assigned.
 public class Environment {
     public final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    private Map<String, Object> values;
+    private final Object[] slots;
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.values = new HashMap<>();
+        this.slots = null;
+    }
+
+    Environment(Environment enclosing, int size) {
+        this.enclosing = enclosing;
+        this.slots = new Object[size];
     }
 
     public void define(String name, Object value) {
-        values.put(name, value);
+        assign(name, value);
+    }
+
+    public void define(int slot, Object value) {
+        slots[slot] = value;
     }
 
     public Object get(String name) {
+        if (values == null) return null;
         return values.get(name);
     }
 
@@ -23,7 +38,13 @@ public class Environment {
         return ancestor(depth).get(name);
     }
 
+    public Object getAt(int depth, int slot) {
+        return ancestor(depth).slots[slot];
+    }
+
     public void assign(String name, Object value) {
+        /// names that live in a class scope are not part of the frame
+        if (values == null) values = new HashMap<>();
         values.put(name, value);
     }
 
@@ -31,7 +52,11 @@ public class Environment {
         ancestor(depth).assign(name, value);
     }
 
-    private Environment ancestor(int depth) {
+    public void assignAt(int depth, int slot, Object value) {
+        ancestor(depth).slots[slot] = value;
+    }
+
+    Environment ancestor(int depth) {
         Environment current = this;
         for (int i = 0; i < depth; ++i) current = current.enclosing;
         return current;
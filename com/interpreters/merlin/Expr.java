@@ -13,6 +13,7 @@ public abstract class Expr {
 		R visitBinaryExpr(BinaryExpr expr);
 		R visitVariableExpr(VariableExpr expr);
 		R visitAssignExpr(AssignExpr expr);
+		R visitCompoundExpr(CompoundExpr expr);
 		R visitLogicExpr(LogicExpr expr);
 		R visitCallExpr(CallExpr expr);
 		R visitFunctionExpr(FunctionExpr expr);
@@ -25,6 +26,7 @@ public abstract class Expr {
 		R visitListComprExpr(ListComprExpr expr);
 		R visitListGetExpr(ListGetExpr expr);
 		R visitListSetExpr(ListSetExpr expr);
+		R visitSliceExpr(SliceExpr expr);
 		R visitTernaryExpr(TernaryExpr expr);
 	}
 
@@ -55,6 +57,7 @@ public abstract class Expr {
 		}
 		public final Token operation;
 		public final  Expr right;
+		public int kind;
 	}
 
 
@@ -87,6 +90,7 @@ public abstract class Expr {
 		public final Expr left;
 		public final  Token operation;
 		public final  Expr right;
+		public int kind;
 	}
 
 
@@ -101,6 +105,8 @@ public abstract class Expr {
 			return visitor.visitVariableExpr(this);
 		}
 		public final Token name;
+		public int depth;
+		public int slot;
 	}
 
 
@@ -121,6 +127,26 @@ public abstract class Expr {
 
 
 
+	public static class CompoundExpr extends Expr{
+		public CompoundExpr(Expr target, Token operation, Expr value) {
+			this.target = target;
+			this.operation = operation;
+			this.value = value;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitCompoundExpr(this);
+		}
+		public final Expr target;
+		public final  Token operation;
+		public final  Expr value;
+		public int kind;
+		public InlineCache cache;
+	}
+
+
+
 	public static class LogicExpr extends Expr{
 		public LogicExpr(Expr left, Token operation, Expr right) {
 			this.left = left;
@@ -153,6 +179,7 @@ public abstract class Expr {
 		public final Expr callee;
 		public final  Token paren;
 		public final  List<Expr> arguments;
+		public MerlinCallable checked;
 	}
 
 
@@ -171,6 +198,15 @@ public abstract class Expr {
 		public final Token paren;
 		public final  List<Token> parameters;
 		public final  List<Stmt> body;
+		public int size;
+		public boolean method;
+		public int invocations;
+		public int backEdges;
+		public int deoptimizations;
+		public boolean uncompilable;
+		public boolean captures;
+		public CompiledCode compiled;
+		public boolean generator;
 	}
 
 
@@ -187,6 +223,7 @@ public abstract class Expr {
 		}
 		public final Expr object;
 		public final  Token property;
+		public InlineCache cache;
 	}
 
 
@@ -205,6 +242,7 @@ public abstract class Expr {
 		public final Expr object;
 		public final  Token property;
 		public final  Expr value;
+		public InlineCache cache;
 	}
 
 
@@ -219,6 +257,8 @@ public abstract class Expr {
 			return visitor.visitThisExpr(this);
 		}
 		public final Token keyword;
+		public int depth;
+		public int slot;
 	}
 
 
@@ -235,6 +275,9 @@ public abstract class Expr {
 		}
 		public final Token keyword;
 		public final  Token property;
+		public int depth;
+		public int thisDepth;
+		public int thisSlot;
 	}
 
 
@@ -251,6 +294,9 @@ public abstract class Expr {
 		}
 		public final Token keyword;
 		public final  List<Expr> arguments;
+		public int depth;
+		public int thisDepth;
+		public int thisSlot;
 	}
 
 
@@ -325,6 +371,28 @@ public abstract class Expr {
 
 
 
+	public static class SliceExpr extends Expr{
+		public SliceExpr(Expr object, Token bracket, Expr start, Expr end, Expr step) {
+			this.object = object;
+			this.bracket = bracket;
+			this.start = start;
+			this.end = end;
+			this.step = step;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitSliceExpr(this);
+		}
+		public final Expr object;
+		public final  Token bracket;
+		public final  Expr start;
+		public final  Expr end;
+		public final  Expr step;
+	}
+
+
+
 	public static class TernaryExpr extends Expr{
 		public TernaryExpr(Expr condition, Expr left, Expr right) {
 			this.condition = condition;
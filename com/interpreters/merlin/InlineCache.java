@@ -0,0 +1,119 @@
+package com.interpreters.merlin;
+
+/// Remembers what a property access site resolved for the shapes of the receivers it has
+/// seen: the slot of a field, or the method found in the receiver's class. Repeated accesses
+/// then skip hashing the name and the walk up the superclass chain. An assignment site also
+/// remembers the shape the instance moves to when the field is new. A site caches up to
+/// MAX_ENTRIES shapes and stops caching (goes megamorphic) when it sees more.
+final class InlineCache {
+
+    static final int MAX_ENTRIES = 4;
+
+    /// diagnostics, printed by --stats
+    static long hits = 0;
+    static long misses = 0;
+    static int megamorphicSites = 0;
+
+    final Token property;
+    private final Shape[] shapes = new Shape[MAX_ENTRIES];
+    /// field slot, or -1 with the method (null if there is none) in 'methods'
+    private final int[] slots = new int[MAX_ENTRIES];
+    private final MerlinCallable[] methods = new MerlinCallable[MAX_ENTRIES];
+    /// shape after an assignment, the cached shape itself unless the field is added
+    private final Shape[] transitions = new Shape[MAX_ENTRIES];
+    private int size = 0;
+    private boolean megamorphic = false;
+
+    InlineCache(Token property) {
+        this.property = property;
+    }
+
+    /// the property of an instance or a module, a method comes back bound to the instance
+    Object get(Object object) {
+        Object value = callee(object);
+        if (value instanceof MerlinFunction && ((MerlinFunction) value).isUnboundMethod()) {
+            return ((MerlinFunction) value).bind("this", object);
+        }
+        if (value instanceof NativeMethod) return ((NativeMethod) value).read(object);
+        return value;
+    }
+
+    /// same lookup for a call site, which passes the instance to a method itself
+    Object callee(Object object) {
+        if (object instanceof MerlinInstance) return callee((MerlinInstance) object);
+        if (object instanceof MerlinLib) return ((MerlinLib) object).get(property);
+
+        throw new RuntimeError(property, "Only instances and modules have properties.");
+    }
+
+    private Object callee(MerlinInstance instance) {
+        Shape shape = instance.shape;
+        for (int i = 0; i < size; ++i) {
+            if (shapes[i] == shape) {
+                ++hits;
+                return read(instance, slots[i], methods[i]);
+            }
+        }
+
+        ++misses;
+        int slot = shape.slot(property.lexeme);
+        MerlinCallable method = null;
+        if (slot < 0) {
+            method = shape.description.findMethod(property);
+            if (method == null) method = shape.description.findNative(property);
+        }
+        remember(shape, slot, method, shape);
+        return read(instance, slot, method);
+    }
+
+    private Object read(MerlinInstance instance, int slot, MerlinCallable method) {
+        if (slot >= 0) return instance.values[slot];
+        if (method != null) return method;
+
+        throw new RuntimeError(property, "Undefined property '" + property.lexeme + "'.");
+    }
+
+    void set(MerlinInstance instance, Object value) {
+        Shape shape = instance.shape;
+        for (int i = 0; i < size; ++i) {
+            if (shapes[i] == shape) {
+                ++hits;
+                write(instance, slots[i], transitions[i], value);
+                return;
+            }
+        }
+
+        ++misses;
+        int slot = shape.slot(property.lexeme);
+        Shape next = shape;
+        if (slot < 0) {
+            next = shape.with(property.lexeme);
+            slot = next.size - 1;
+        }
+        remember(shape, slot, null, next);
+        write(instance, slot, next, value);
+    }
+
+    private static void write(MerlinInstance instance, int slot, Shape next, Object value) {
+        if (next == instance.shape) instance.values[slot] = value;
+        else instance.store(next, value);
+    }
+
+    private void remember(Shape shape, int slot, MerlinCallable method, Shape next) {
+        if (size < MAX_ENTRIES) {
+            shapes[size] = shape;
+            slots[size] = slot;
+            methods[size] = method;
+            transitions[size++] = next;
+        }
+        else if (!megamorphic) {
+            megamorphic = true;
+            ++megamorphicSites;
+        }
+    }
+
+    static String statistics() {
+        return "inline caches: " + hits + " hits, " + misses + " misses, " + megamorphicSites + " megamorphic sites";
+    }
+
+}
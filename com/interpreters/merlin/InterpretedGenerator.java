@@ -0,0 +1,169 @@
+package com.interpreters.merlin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.interpreters.merlin.Expr.FunctionExpr;
+import com.interpreters.merlin.Expr.VariableExpr;
+import com.interpreters.merlin.Stmt.BlockStmt;
+import com.interpreters.merlin.Stmt.FORStmt;
+import com.interpreters.merlin.Stmt.ForEachStmt;
+import com.interpreters.merlin.Stmt.IFStmt;
+import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
+
+/// Generator of a function run by the tree-walking interpreter. The statements on the way to
+/// the current 'yield' are kept as a stack of frames instead of Java frames, so the body is
+/// suspended by returning and resumed by stepping the stack again. Statements without a
+/// 'yield' inside run through the interpreter as usual.
+final class InterpretedGenerator extends MerlinGenerator {
+
+    private abstract static class Frame {
+        final Environment environment;
+
+        Frame(Environment environment) {
+            this.environment = environment;
+        }
+
+        /// the next statement to run in the frame's environment, null when the frame is done
+        abstract Stmt next(Interpreter interpreter);
+    }
+
+    private static final class Block extends Frame {
+        private final List<Stmt> statements;
+        private int index = 0;
+
+        Block(Environment environment, List<Stmt> statements) {
+            super(environment);
+            this.statements = statements;
+        }
+
+        @Override
+        Stmt next(Interpreter interpreter) {
+            return index < statements.size() ? statements.get(index++) : null;
+        }
+    }
+
+    private static final class While extends Frame {
+        private final WHILEStmt stmt;
+
+        While(Environment environment, WHILEStmt stmt) {
+            super(environment);
+            this.stmt = stmt;
+        }
+
+        @Override
+        Stmt next(Interpreter interpreter) {
+            return Interpreter.isTruthy(interpreter.evaluate(stmt.condition, environment)) ? stmt.body : null;
+        }
+    }
+
+    private static final class For extends Frame {
+        private final FORStmt stmt;
+        private boolean started = false;
+
+        For(Environment environment, FORStmt stmt) {
+            super(environment);
+            this.stmt = stmt;
+        }
+
+        @Override
+        Stmt next(Interpreter interpreter) {
+            if (started && stmt.increment != null) interpreter.evaluate(stmt.increment, environment);
+            started = true;
+            return Interpreter.isTruthy(interpreter.evaluate(stmt.condition, environment)) ? stmt.body : null;
+        }
+    }
+
+    private static final class ForEach extends Frame {
+        private final ForEachStmt stmt;
+        private final MerlinIterator cursor;
+
+        ForEach(Environment environment, ForEachStmt stmt, MerlinIterator cursor) {
+            super(environment);
+            this.stmt = stmt;
+            this.cursor = cursor;
+        }
+
+        @Override
+        Stmt next(Interpreter interpreter) {
+            if (!Interpreter.hasNext(cursor)) return null;
+            Object value = Interpreter.next(cursor);
+            VariableExpr iter = stmt.iter;
+            if (iter.slot < 0) environment.assign(iter.name.lexeme, value, iter.depth);
+            else environment.assignAt(iter.depth, iter.slot, value);
+            return stmt.body;
+        }
+    }
+
+    private final Interpreter interpreter;
+    private final List<Frame> frames = new ArrayList<>();
+
+    InterpretedGenerator(String name, FunctionExpr description, Interpreter interpreter, Environment environment) {
+        super(name, description.paren);
+        this.interpreter = interpreter;
+        frames.add(new Block(environment, description.body));
+    }
+
+    @Override
+    Object advance() {
+        while (!frames.isEmpty()) {
+            Frame frame = frames.get(frames.size() - 1);
+            Stmt stmt = frame.next(interpreter);
+            if (stmt == null) {
+                frames.remove(frames.size() - 1);
+                continue;
+            }
+
+            Environment environment = frame.environment;
+            /// an 'if' around a 'yield' only picks the branch to go on with
+            while (stmt instanceof IFStmt && ((IFStmt) stmt).yields) {
+                IFStmt branch = (IFStmt) stmt;
+                boolean condition = Interpreter.isTruthy(interpreter.evaluate(branch.condition, environment));
+                stmt = condition ? branch.thenBranch : branch.elseBranch;
+            }
+            if (stmt == null) continue;
+
+            if (stmt instanceof YieldStmt) {
+                YieldStmt yield = (YieldStmt) stmt;
+                return yield.value != null ? interpreter.evaluate(yield.value, environment) : null;
+            }
+            if (enter(stmt, environment)) continue;
+
+            /// the only completion of a statement in a generator is a 'return', which ends it
+            if (interpreter.execute(stmt, environment) != null) {
+                interpreter.returned();
+                frames.clear();
+            }
+        }
+        return COMPLETED;
+    }
+
+    /// pushes the frame of a statement with a 'yield' inside, false for any other statement
+    private boolean enter(Stmt stmt, Environment environment) {
+        if (stmt instanceof BlockStmt && ((BlockStmt) stmt).yields) {
+            BlockStmt block = (BlockStmt) stmt;
+            frames.add(new Block(new Environment(environment, block.size), block.statements));
+        }
+        else if (stmt instanceof WHILEStmt && ((WHILEStmt) stmt).yields) {
+            frames.add(new While(environment, (WHILEStmt) stmt));
+        }
+        else if (stmt instanceof FORStmt && ((FORStmt) stmt).yields) {
+            FORStmt loop = (FORStmt) stmt;
+            if (loop.initializer != null) interpreter.execute(loop.initializer, environment);
+            frames.add(new For(environment, loop));
+        }
+        else if (stmt instanceof ForEachStmt && ((ForEachStmt) stmt).yields) {
+            ForEachStmt loop = (ForEachStmt) stmt;
+            Environment loopEnvironment = new Environment(environment, 1);
+            Object iterable = interpreter.evaluate(loop.iterable, loopEnvironment);
+            if (!(iterable instanceof MerlinIterable)) {
+                throw new RuntimeError(loop.in, "Expression after 'in' must be iterable.");
+            }
+            frames.add(new ForEach(loopEnvironment, loop, ((MerlinIterable) iterable).iterator()));
+        }
+        else return false;
+        return true;
+    }
+
+}
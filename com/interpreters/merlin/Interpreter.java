@@ -9,6 +9,7 @@ import java.util.Map;
 import com.interpreters.merlin.Expr.AssignExpr;
 import com.interpreters.merlin.Expr.BinaryExpr;
 import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
 import com.interpreters.merlin.Expr.FunctionExpr;
 import com.interpreters.merlin.Expr.GetExpr;
 import com.interpreters.merlin.Expr.GroupingExpr;
@@ -19,6 +20,7 @@ import com.interpreters.merlin.Expr.ListSetExpr;
 import com.interpreters.merlin.Expr.LiteralExpr;
 import com.interpreters.merlin.Expr.LogicExpr;
 import com.interpreters.merlin.Expr.SetExpr;
+import com.interpreters.merlin.Expr.SliceExpr;
 import com.interpreters.merlin.Expr.SuperCallExpr;
 import com.interpreters.merlin.Expr.SuperExpr;
 import com.interpreters.merlin.Expr.ThisExpr;
@@ -36,12 +38,27 @@ import com.interpreters.merlin.Stmt.ImportStmt;
 import com.interpreters.merlin.Stmt.RETURNStmt;
 import com.interpreters.merlin.Stmt.VarDeclStmt;
 import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
 import com.interpreters.merlin.nativeFunctions.*;
 import com.interpreters.merlin.std.map.map;
 import com.interpreters.merlin.std.os.os;
 import com.interpreters.merlin.std.string.string;
+import com.interpreters.merlin.std.string.stringInstance;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+import static com.interpreters.merlin.Specialization.*;
+
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Object> {
+
+    private static final int SMALL_INTEGERS_OFFSET = 128;
+    private static final Long[] SMALL_INTEGERS = new Long[SMALL_INTEGERS_OFFSET + 1024];
+
+    /// strings of one character, indexing and iterating over Latin-1 text shares them
+    private static final String[] CHARACTERS = new String[256];
+
+    static {
+        for (int i = 0; i < SMALL_INTEGERS.length; ++i) SMALL_INTEGERS[i] = (long) (i - SMALL_INTEGERS_OFFSET);
+        for (int i = 0; i < CHARACTERS.length; ++i) CHARACTERS[i] = String.valueOf((char) i);
+    }
 
     private final String module;
     private final boolean mainThread;
@@ -49,8 +66,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     private final Environment global = new Environment(null);
     private Environment environment = global;
-
-    private Map<Expr, Integer> distances;
+    private VM vm;
 
     Interpreter(String module, Map<String, MerlinLib> libs, boolean mainThread) {
         this.module = module;
@@ -77,18 +93,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         global.define("max", new Max());
     }
 
-    public void addDistances(Map<Expr, Integer> anotherDistances) {
-        anotherDistances.putAll(distances);
-    }
-
     public boolean isMain() {
         return this.mainThread;
     }
 
-    public void setDistance(Map<Expr, Integer> distances) {
-        this.distances = distances;
-    }
-
     public Environment interpreteAll(List<Stmt> statements) {
         try {
             for (Stmt statement : statements) 
@@ -104,12 +112,80 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    private void interprete(List<Stmt> statements) {
-        for (Stmt statement : statements) execute(statement);
+    public Environment interpreteCompiled(Chunk script) {
+        if (vm == null) vm = new VM(this);
+        try {
+            vm.execute(script, global.getValues());
+
+            return global;
+        }
+        catch(RuntimeError error) {
+            if (!mainThread) throw error;
+            if (!error.dummy) Merlin.runtimeError(error.token, error.message);
+
+            return null;
+        }
+    }
+
+    /// statements complete normally with null, or with RETURNED after a 'return' has stored
+    /// its value; the completion is passed up to the function call instead of unwinding it
+    static final Object RETURNED = new Object();
+    private Object returnValue = null;
+
+    /// completion of a 'return' of a call to a Merlin function, the function is left in
+    /// tailCallee for the caller's MerlinFunction.call to run in place of the returning one
+    static final Object TAIL_CALL = new Object();
+    MerlinFunction tailCallee = null;
+    Object tailReceiver = null;
+    Object[] tailArguments = null;
+
+    Object tailCall(MerlinFunction callee, Object receiver, Object[] arguments) {
+        tailCallee = callee;
+        tailReceiver = receiver;
+        tailArguments = arguments;
+        return TAIL_CALL;
+    }
+
+    private Object interprete(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            Object completion = execute(statement);
+            if (completion != null) return completion;
+        }
+        return null;
     }
 
-    public void execute(Stmt stmt) {
-        stmt.accept(this);
+    public Object execute(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    /// runs a statement of a suspended generator body in the environment it was suspended in
+    Object execute(Stmt stmt, Environment environment) {
+        Environment tmp = this.environment;
+        this.environment = environment;
+        try {
+            return execute(stmt);
+        }
+        finally {
+            this.environment = tmp;
+        }
+    }
+
+    Object evaluate(Expr expr, Environment environment) {
+        Environment tmp = this.environment;
+        this.environment = environment;
+        try {
+            return evaluate(expr);
+        }
+        finally {
+            this.environment = tmp;
+        }
+    }
+
+    /// the value of the 'return' that completed the function body
+    Object returned() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
     }
 
     @Override
@@ -120,12 +196,29 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitUnaryExpr(UnaryExpr expr) {
         Object right = evaluate(expr.right);
-        switch (expr.operation.type) {
+        switch (expr.kind) {
+            case NEGATE_DOUBLE:
+                if (right instanceof Double) return -(double) right;
+                break;
+            case NEGATE_LONG:
+                if (right instanceof Long) return negate((long) right);
+                break;
+            case GENERIC:
+                return unary(expr.operation, right);
+        }
+
+        expr.kind = expr.kind == UNINITIALIZED ? Specialization.unary(expr.operation.type, right) : GENERIC;
+        return unary(expr.operation, right);
+    }
+
+    static Object unary(Token operation, Object right) {
+        switch (operation.type) {
             case BANG:
                 return !isTruthy(right);
             case MINUS:
-                if (right instanceof Double) return -(double) right;
-                throw new RuntimeError(expr.operation, "Operand must be number.");
+                return negate(right, operation);
+            case TILDE:
+                return complement(right, operation);
         }
 
         /// unreachable
@@ -139,50 +232,206 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitBinaryExpr(BinaryExpr expr) {
-        Object  left = evaluate(expr.left), 
-                right = evaluate(expr.right);
-        
-        switch (expr.operation.type) {
-            case PLUS:
-                return sum(left, right, expr.operation);
-            case STAR:
-                if ((left instanceof Double) && (right instanceof Double)) {
-                    return (double) left * (double) right;
-                }
-                throw new RuntimeError(expr.operation, "Operands must be two numbers.");
-            case SLASH:
-                if ((left instanceof Double) && (right instanceof Double)) {
-                    if ((double) right == 0) 
-                        throw new RuntimeError(expr.operation, "Divison by zero.");
-                    
-                    return (double) left / (double) right;
+        switch (expr.kind) {
+            case ADD_DOUBLE:
+            case SUBTRACT_DOUBLE:
+            case MULTIPLY_DOUBLE:
+            case DIVIDE_DOUBLE:
+            case MODULO_DOUBLE:
+                try {
+                    return arithmeticDouble(expr);
                 }
-                throw new RuntimeError(expr.operation, "Operands must be two numbers.");
-            case MINUS:
-                if ((left instanceof Double) && (right instanceof Double)) {
-                    return (double) left - (double) right;
-                }
-                throw new RuntimeError(expr.operation, "Operands must be two numbers.");
-
-            case PERCENT:
-                if ((left instanceof Double) && (right instanceof Double)) {
-                    if ((double) right == 0) 
-                        throw new RuntimeError(expr.operation, "Divison by zero.");
-                    
-                    return Math.floor((double)left) % Math.floor((double)right);
+                catch (UnexpectedResult unexpected) {
+                    return unexpected.value;
                 }
-                throw new RuntimeError(expr.operation, "Operands must be two numbers.");
+            case LESS_DOUBLE:
+            case LESS_EQUAL_DOUBLE:
+            case GREATER_DOUBLE:
+            case GREATER_EQUAL_DOUBLE:
+            case EQUAL_DOUBLE:
+            case NOT_EQUAL_DOUBLE:
+                return compareDouble(expr);
+        }
+
+        Object  left = evaluate(expr.left), 
+                right = evaluate(expr.right);
+
+        switch (expr.kind) {
+            case ADD_STRING:
+                if (left instanceof String) return (String) left + stringify(right);
+                break;
+            case LESS_STRING:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) < 0;
+                break;
+            case LESS_EQUAL_STRING:
+                if (left instanceof String && right instanceof String) return ((String) right).compareTo((String) left) >= 0;
+                break;
+            case GREATER_STRING:
+                if (left instanceof String && right instanceof String) return ((String) right).compareTo((String) left) < 0;
+                break;
+            case GREATER_EQUAL_STRING:
+                if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right) >= 0;
+                break;
+
+            case ADD_LONG:
+                if (left instanceof Long && right instanceof Long) return sum((long) left, (long) right);
+                break;
+            case SUBTRACT_LONG:
+                if (left instanceof Long && right instanceof Long) return subtract((long) left, (long) right);
+                break;
+            case MULTIPLY_LONG:
+                if (left instanceof Long && right instanceof Long) return multiply((long) left, (long) right);
+                break;
+            case MODULO_LONG:
+                if (left instanceof Long && right instanceof Long && (long) right != 0) return box((long) left % (long) right);
+                break;
+            case LESS_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left < (long) right;
+                break;
+            case LESS_EQUAL_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left <= (long) right;
+                break;
+            case GREATER_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left > (long) right;
+                break;
+            case GREATER_EQUAL_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left >= (long) right;
+                break;
+            case EQUAL_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left == (long) right;
+                break;
+            case NOT_EQUAL_LONG:
+                if (left instanceof Long && right instanceof Long) return (long) left != (long) right;
+                break;
+
+            case ADD_LIST:
+                if (left instanceof MerlinListInstance && right instanceof MerlinListInstance)
+                    return ((MerlinListInstance) left).concat((MerlinListInstance) right);
+                break;
+
+            case GENERIC:
+                return binary(expr.operation, left, right);
+        }
+
+        /// first execution picks a specialization, a failed guard deoptimizes the node for good
+        expr.kind = expr.kind == UNINITIALIZED ? Specialization.binary(expr.operation.type, left, right) : GENERIC;
+        return binary(expr.operation, left, right);
+    }
+
+    /// evaluates a node feeding arithmetic or a comparison, only leaves of the
+    /// arithmetic tree are unboxed and intermediate results are never boxed
+    private double evaluateDouble(Expr expr) {
+        /// leaves are visited directly, the virtual accept() would dominate small arithmetic
+        if (expr instanceof VariableExpr) return expectDouble(visitVariableExpr((VariableExpr) expr));
+        if (expr instanceof LiteralExpr) return expectDouble(((LiteralExpr) expr).value);
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            if (binary.kind >= ADD_DOUBLE && binary.kind <= MODULO_DOUBLE) return arithmeticDouble(binary);
+        }
+        else if (expr instanceof UnaryExpr && ((UnaryExpr) expr).kind == NEGATE_DOUBLE) {
+            UnaryExpr unary = (UnaryExpr) expr;
+            try {
+                return -evaluateDouble(unary.right);
+            }
+            catch (UnexpectedResult unexpected) {
+                unary.kind = GENERIC;
+                return expectDouble(unary(unary.operation, unexpected.value));
+            }
+        }
+
+        return expectDouble(evaluate(expr));
+    }
+
+    private double arithmeticDouble(BinaryExpr expr) {
+        double left, right;
+        try {
+            left = evaluateDouble(expr.left);
+        }
+        catch (UnexpectedResult unexpected) {
+            return expectDouble(deoptimize(expr, unexpected.value, evaluate(expr.right)));
+        }
+        try {
+            right = evaluateDouble(expr.right);
+        }
+        catch (UnexpectedResult unexpected) {
+            return expectDouble(deoptimize(expr, left, unexpected.value));
+        }
+
+        switch (expr.kind) {
+            case ADD_DOUBLE: return left + right;
+            case SUBTRACT_DOUBLE: return left - right;
+            case MULTIPLY_DOUBLE: return left * right;
+            case DIVIDE_DOUBLE:
+                if (right == 0) throw new RuntimeError(expr.operation, "Divison by zero.");
+                return left / right;
+            default:
+                if (right == 0) throw new RuntimeError(expr.operation, "Divison by zero.");
+                return remainder(left, right);
+        }
+    }
+
+    private Object compareDouble(BinaryExpr expr) {
+        double left, right;
+        try {
+            left = evaluateDouble(expr.left);
+        }
+        catch (UnexpectedResult unexpected) {
+            return deoptimize(expr, unexpected.value, evaluate(expr.right));
+        }
+        try {
+            right = evaluateDouble(expr.right);
+        }
+        catch (UnexpectedResult unexpected) {
+            return deoptimize(expr, left, unexpected.value);
+        }
+
+        switch (expr.kind) {
+            case LESS_DOUBLE: return left < right;
+            case LESS_EQUAL_DOUBLE: return !(right < left);
+            case GREATER_DOUBLE: return right < left;
+            case GREATER_EQUAL_DOUBLE: return !(left < right);
+            case EQUAL_DOUBLE: return left == right;
+            default: return left != right;
+        }
+    }
 
-            case LESS: return less(left, right, expr.operation);
-            case LESS_EQUAL: return !less(right, left, expr.operation);
-            case GREATER_EQUAL: return !less(left, right, expr.operation);
-            case GREATER: return less(right, left, expr.operation);
+    private static Object deoptimize(BinaryExpr expr, Object left, Object right) {
+        expr.kind = GENERIC;
+        return binary(expr.operation, left, right);
+    }
+
+    private static double expectDouble(Object value) {
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    static Object binary(Token operation, Object left, Object right) {
+        switch (operation.type) {
+            case PLUS: return sum(left, right, operation);
+            case STAR: return multiply(left, right, operation);
+            case SLASH: return divide(left, right, operation);
+            case MINUS: return subtract(left, right, operation);
+            case PERCENT: return modulo(left, right, operation);
+            case BACKSLASH: return integerDivide(left, right, operation);
+            case AMPERSAND:
+            case PIPE:
+            case CARET:
+            case LESS_LESS:
+            case GREATER_GREATER:
+                return bitwise(left, right, operation);
+
+            case LESS: return less(left, right, operation);
+            case LESS_EQUAL: return !less(right, left, operation);
+            case GREATER_EQUAL: return !less(left, right, operation);
+            case GREATER: return less(right, left, operation);
             case EQUAL_EQUAL: return equals(left, right);
             case BANG_EQUAL: return !equals(left, right);
         }
         return null;
     }
 
+
+
     @Override
     public Object visitTernaryExpr(Expr.TernaryExpr expr) {
         Object condition = evaluate(expr.condition);
@@ -204,57 +453,171 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(VariableExpr expr) {
-        return environment.get(expr.name.lexeme, distances.get(expr));
+        if (expr.slot < 0) return environment.get(expr.name.lexeme, expr.depth);
+        return environment.getAt(expr.depth, expr.slot);
     }
 
     @Override
     public Object visitAssignExpr(AssignExpr expr) {
         Object value = evaluate(expr.value);
-        environment.assign(expr.object.name.lexeme, value, distances.get(expr.object));
+        assign(expr.object, value);
         return value;
     }
 
+    /// 'target op= value' finds the storage of the target once, reads it and writes the result back
+    @Override
+    public Object visitCompoundExpr(CompoundExpr expr) {
+        if (expr.target instanceof VariableExpr) {
+            VariableExpr variable = (VariableExpr) expr.target;
+            Environment scope = environment.ancestor(variable.depth);
+            if (variable.slot < 0) {
+                Object value = update(expr, scope.get(variable.name.lexeme), evaluate(expr.value));
+                scope.assign(variable.name.lexeme, value);
+                return value;
+            }
+            Object value = update(expr, scope.getAt(0, variable.slot), evaluate(expr.value));
+            scope.assignAt(0, variable.slot, value);
+            return value;
+        }
+
+        if (expr.target instanceof GetExpr) {
+            GetExpr getter = (GetExpr) expr.target;
+            Object object = evaluate(getter.object);
+            if (!(object instanceof MerlinInstance)) {
+                throw new RuntimeError(getter.property, "Only instances have properties.");
+            }
+            MerlinInstance instance = (MerlinInstance) object;
+            Object value = update(expr, getter.cache.get(instance), evaluate(expr.value));
+            instance.set(expr.cache, value);
+            return value;
+        }
+
+        ListGetExpr getter = (ListGetExpr) expr.target;
+        Object object = evaluate(getter.object);
+        if (!(object instanceof MerlinListInstance)) {
+            throw new RuntimeError(getter.bracket, "Can't take index from non-list object.");
+        }
+        MerlinListInstance list = (MerlinListInstance) object;
+        Object index = evaluate(getter.index);
+        Object value = update(expr, list.get(index, getter.bracket), evaluate(expr.value));
+        list.set(index, value, getter.bracket);
+        return value;
+    }
+
+    /// the operator of a compound assignment, specialized on its operand types like a BinaryExpr
+    private static Object update(CompoundExpr expr, Object left, Object right) {
+        switch (expr.kind) {
+            case ADD_LONG:
+                if (left instanceof Long && right instanceof Long) return sum((long) left, (long) right);
+                break;
+            case SUBTRACT_LONG:
+                if (left instanceof Long && right instanceof Long) return subtract((long) left, (long) right);
+                break;
+            case MULTIPLY_LONG:
+                if (left instanceof Long && right instanceof Long) return multiply((long) left, (long) right);
+                break;
+            case MODULO_LONG:
+                if (left instanceof Long && right instanceof Long && (long) right != 0) return box((long) left % (long) right);
+                break;
+            case ADD_DOUBLE:
+                if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+                break;
+            case SUBTRACT_DOUBLE:
+                if (left instanceof Double && right instanceof Double) return (double) left - (double) right;
+                break;
+            case MULTIPLY_DOUBLE:
+                if (left instanceof Double && right instanceof Double) return (double) left * (double) right;
+                break;
+            case DIVIDE_DOUBLE:
+                if (left instanceof Double && right instanceof Double && (double) right != 0) return (double) left / (double) right;
+                break;
+            case MODULO_DOUBLE:
+                if (left instanceof Double && right instanceof Double && (double) right != 0) return remainder((double) left, (double) right);
+                break;
+            case ADD_STRING:
+                if (left instanceof String) return (String) left + stringify(right);
+                break;
+            case ADD_LIST:
+                if (left instanceof MerlinListInstance && right instanceof MerlinListInstance)
+                    return ((MerlinListInstance) left).concat((MerlinListInstance) right);
+                break;
+            case GENERIC:
+                return binary(expr.operation, left, right);
+        }
+
+        int kind = Specialization.binary(expr.operation.type, left, right);
+        if (expr.kind == UNINITIALIZED) expr.kind = kind;
+        else if (expr.kind != kind) expr.kind = GENERIC;
+        return binary(expr.operation, left, right);
+    }
+
+    private void assign(VariableExpr variable, Object value) {
+        if (variable.slot < 0) environment.assign(variable.name.lexeme, value, variable.depth);
+        else environment.assignAt(variable.depth, variable.slot, value);
+    }
+
+    private void define(Token name, int slot, Object value) {
+        if (slot < 0) environment.define(name.lexeme, value);
+        else environment.define(slot, value);
+    }
+
     @Override
     public Object visitCallExpr(CallExpr expr) {
-        Object object = evaluate(expr.callee);
+        return call(expr, false);
+    }
+
+    private Object call(CallExpr expr, boolean tail) {
+        /// 'object.method(...)' passes the object to the method instead of binding it
+        Object receiver = null, object;
+        if (expr.callee instanceof GetExpr) {
+            GetExpr getter = (GetExpr) expr.callee;
+            receiver = evaluate(getter.object);
+            object = getter.cache.callee(receiver);
+        }
+        else object = evaluate(expr.callee);
+
         if (!(object instanceof MerlinCallable)) {
             throw new RuntimeError(expr.paren, 
                 "The call operator can only be used on function and class objects");
         }
 
         MerlinCallable callee = (MerlinCallable) object;
+        MerlinCallable.checkArity(expr, callee);
 
-        if (callee.arity() != -256) {
-            if (callee.arity() < 0) {
-                if (expr.arguments.size() > -callee.arity()) {
-                    throw new RuntimeError(expr.paren, 
-                    "Expected no more than " + (-callee.arity()) +" arguments but got " + expr.arguments.size() + ".");
-                }
-            }
-            else if (callee.arity() != expr.arguments.size()) {
-                throw new RuntimeError(expr.paren, 
-                    "Expected " + callee.arity() + " arguments but got " + expr.arguments.size() + ".");
+        if (callee instanceof MerlinFunction) {
+            MerlinFunction function = (MerlinFunction) callee;
+            /// functions compiled for the VM run their own loop
+            if (tail && !(function instanceof VMFunction)) {
+                return tailCall(function, receiver, evaluateArguments(expr.arguments));
             }
+            if (function.isUnboundMethod()) return function.call(this, receiver, evaluateArguments(expr.arguments));
         }
-        
-        List<Object> arguments = new ArrayList<>();
-        for (Expr arg : expr.arguments) arguments.add(evaluate(arg));
+        if (callee instanceof NativeMethod) {
+            return ((NativeMethod) callee).call(this, receiver, evaluateArguments(expr.arguments), expr.paren);
+        }
+
+        List<Expr> arguments = expr.arguments;
+        switch (arguments.size()) {
+            case 0: return callee.call0(this, expr.paren);
+            case 1: return callee.call1(this, evaluate(arguments.get(0)), expr.paren);
+            case 2: return callee.call2(this, evaluate(arguments.get(0)), evaluate(arguments.get(1)), expr.paren);
+            case 3:
+                return callee.call3(this, evaluate(arguments.get(0)), evaluate(arguments.get(1)),
+                    evaluate(arguments.get(2)), expr.paren);
+            default: return callee.call(this, evaluateArguments(arguments), expr.paren);
+        }
+    }
 
-        return callee.call(this, arguments, expr.paren);
+    private Object[] evaluateArguments(List<Expr> arguments) {
+        if (arguments.isEmpty()) return MerlinFunction.NO_ARGUMENTS;
+        Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; ++i) values[i] = evaluate(arguments.get(i));
+        return values;
     }
 
     @Override
     public Object visitGetExpr(GetExpr expr) {
-        Object object = evaluate(expr.object);
-        if (object instanceof MerlinInstance) {
-            MerlinInstance instance = (MerlinInstance) object;
-            return instance.get(expr.property);
-        }
-        else if (object instanceof MerlinLib) {
-            return ((MerlinLib) object).get(expr.property);
-        }
-
-        throw new RuntimeError(expr.property, "Only instances and modules have properties.");
+        return expr.cache.get(evaluate(expr.object));
     }
 
     @Override
@@ -266,7 +629,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         MerlinInstance instance = (MerlinInstance) object;
         
         Object value = evaluate(expr.value);
-        instance.set(expr.property.lexeme, value);
+        instance.set(expr.cache, value);
 
         return value;
     }
@@ -282,7 +645,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitListComprExpr(ListComprExpr expr) {
 
-        Environment newEnv = new Environment(environment);
+        Environment newEnv = new Environment(environment, 1);
         Environment tmp = environment;
 
         try {
@@ -292,16 +655,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 throw new RuntimeError(expr.forComprehension.in, "Expression after 'in' must be iterable in list comprehension.");
             }
 
-            MerlinIterable iterable = (MerlinIterable) iter;
+            MerlinIterator cursor = ((MerlinIterable) iter).iterator();
 
-            List<Object> lst = new ArrayList<>();
-            for (; !iterable.isAtEnd(); ) {
-                environment.assign(expr.forComprehension.iter.name.lexeme, iterable.next(), distances.get(expr.forComprehension.iter));
-                if (isTruthy(evaluate(expr.filter))) lst.add(evaluate(expr.expr));
+            MerlinListInstance result = new MerlinListInstance();
+            while (hasNext(cursor)) {
+                assign(expr.forComprehension.iter, next(cursor));
+                if (isTruthy(evaluate(expr.filter))) result.append(evaluate(expr.expr));
             }
 
-            iterable.reset();
-            return new MerlinListInstance(lst);
+            return result;
         }
         finally {
             environment = tmp;
@@ -311,11 +673,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitListGetExpr(ListGetExpr expr) {
         Object object = evaluate(expr.object);
-        if (!(object instanceof MerlinListInstance)) {
-            throw new RuntimeError(expr.bracket, "Can't take index from non-list object.");
+        if (object instanceof MerlinListInstance) {
+            return ((MerlinListInstance) object).get(evaluate(expr.index), expr.bracket);
         }
-        Object index = evaluate(expr.index);
-        return ((MerlinListInstance) object).get(index, expr.bracket);
+        if (!indexable(object)) throw new RuntimeError(expr.bracket, "Can't take index from non-list object.");
+        return index(object, evaluate(expr.index), expr.bracket);
+    }
+
+    @Override
+    public Object visitSliceExpr(SliceExpr expr) {
+        Object object = evaluate(expr.object);
+        Object start = expr.start != null ? evaluate(expr.start) : null;
+        Object end = expr.end != null ? evaluate(expr.end) : null;
+        Object step = expr.step != null ? evaluate(expr.step) : null;
+        return slice(object, start, end, step, expr.bracket);
     }
 
     @Override
@@ -332,22 +703,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(ThisExpr expr) {
-        int distance = distances.get(expr);
-        return environment.get("this", distance);
+        return environment.getAt(expr.depth, expr.slot);
     }
 
     @Override
     public Object visitSuperExpr(SuperExpr expr) {
-        int distance = distances.get(expr);
-        MerlinClass superclass = (MerlinClass) environment.get(expr.keyword.lexeme, distance);
-        MerlinInstance instance = (MerlinInstance) environment.get("this", distance - 1);
+        MerlinClass superclass = (MerlinClass) environment.getAt(expr.depth, 0);
+        MerlinInstance instance = (MerlinInstance) environment.getAt(expr.thisDepth, expr.thisSlot);
         return superclass.findMethod(expr.property).bind("this", instance);
     }
 
     @Override
     public Object visitSuperCallExpr(SuperCallExpr expr) {
-        int distance = distances.get(expr);
-        MerlinClass superclass = (MerlinClass) environment.get(expr.keyword.lexeme, distance);
+        MerlinClass superclass = (MerlinClass) environment.getAt(expr.depth, 0);
         MerlinFunction constructor = superclass.getConstructor();
         if (constructor == null) return null;
         if (constructor.arity() != expr.arguments.size()) {
@@ -355,12 +723,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 "Expected " + constructor.arity() + " arguments but got " + expr.arguments.size()+ ".");
         }
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr arg : expr.arguments) arguments.add(evaluate(arg));
+        Object[] arguments = evaluateArguments(expr.arguments);
 
-
-        MerlinInstance instance = (MerlinInstance) environment.get("this", distance - 1);
-        superclass.getConstructor().bind("this", instance).call(this, arguments, expr.keyword);
+        MerlinInstance instance = (MerlinInstance) environment.getAt(expr.thisDepth, expr.thisSlot);
+        constructor.call(this, instance, arguments);
         return null;
     } 
 
@@ -373,13 +739,158 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.accept(this);
     }
 
-    private boolean equals(Object left, Object right) {
+    /// integer arithmetic never wraps around: a result that doesn't fit into a long is given
+    /// as the double one
+    static Object sum(long left, long right) {
+        try {
+            return box(Math.addExact(left, right));
+        }
+        catch (ArithmeticException overflow) {
+            return (double) left + (double) right;
+        }
+    }
+
+    static Object subtract(long left, long right) {
+        try {
+            return box(Math.subtractExact(left, right));
+        }
+        catch (ArithmeticException overflow) {
+            return (double) left - (double) right;
+        }
+    }
+
+    static Object multiply(long left, long right) {
+        try {
+            return box(Math.multiplyExact(left, right));
+        }
+        catch (ArithmeticException overflow) {
+            return (double) left * (double) right;
+        }
+    }
+
+    static Object negate(long right) {
+        if (right == Long.MIN_VALUE) return -(double) right;
+        return box(-right);
+    }
+
+    static Object multiply(Object left, Object right, Token operation) {
+        if ((left instanceof Double) && (right instanceof Double)) {
+            return (double) left * (double) right;
+        }
+        if ((left instanceof Long) && (right instanceof Long)) {
+            return multiply((long) left, (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) return toDouble(left) * toDouble(right);
+        throw new RuntimeError(operation, "Operands must be two numbers.");
+    }
+
+    static Object divide(Object left, Object right, Token operation) {
+        if (isNumber(left) && isNumber(right)) {
+            if (toDouble(right) == 0) 
+                throw new RuntimeError(operation, "Divison by zero.");
+            
+            return toDouble(left) / toDouble(right);
+        }
+        throw new RuntimeError(operation, "Operands must be two numbers.");
+    }
+
+    /// the quotient is truncated like the remainder of '%'
+    static Object integerDivide(Object left, Object right, Token operation) {
+        if ((left instanceof Long) && (right instanceof Long)) {
+            if ((long) right == 0) 
+                throw new RuntimeError(operation, "Divison by zero.");
+            if ((long) right == -1) return negate((long) left);
+            
+            return box((long) left / (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) {
+            if (toDouble(right) == 0) 
+                throw new RuntimeError(operation, "Divison by zero.");
+
+            double quotient = toDouble(left) / toDouble(right);
+            return quotient < 0 ? Math.ceil(quotient) : Math.floor(quotient);
+        }
+        throw new RuntimeError(operation, "Operands must be two numbers.");
+    }
+
+    static Object subtract(Object left, Object right, Token operation) {
+        if ((left instanceof Double) && (right instanceof Double)) {
+            return (double) left - (double) right;
+        }
+        if ((left instanceof Long) && (right instanceof Long)) {
+            return subtract((long) left, (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) return toDouble(left) - toDouble(right);
+        throw new RuntimeError(operation, "Operands must be two numbers.");
+    }
+
+    static Object modulo(Object left, Object right, Token operation) {
+        if ((left instanceof Long) && (right instanceof Long)) {
+            if ((long) right == 0) 
+                throw new RuntimeError(operation, "Divison by zero.");
+
+            return box((long) left % (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) {
+            if (toDouble(right) == 0) 
+                throw new RuntimeError(operation, "Divison by zero.");
+            
+            return remainder(toDouble(left), toDouble(right));
+        }
+        throw new RuntimeError(operation, "Operands must be two numbers.");
+    }
+
+    static double remainder(double left, double right) {
+        double l = Math.floor(left), r = Math.floor(right);
+        /// floored operands that fit a long give the same remainder without the slow drem call
+        if (r != 0 && Math.abs(l) < 0x1p62 && Math.abs(r) < 0x1p62) {
+            long remainder = (long) l % (long) r;
+            return remainder == 0 && l < 0 ? -0.0 : (double) remainder;
+        }
+        return l % r;
+    }
+
+    /// '&', '|', '^', '<<' and '>>' are defined on integers only
+    static Object bitwise(Object left, Object right, Token operation) {
+        if (!(left instanceof Long) || !(right instanceof Long))
+            throw new RuntimeError(operation, "Operands must be two integers.");
+
+        long l = (long) left, r = (long) right;
+        switch (operation.type) {
+            case AMPERSAND: return box(l & r);
+            case PIPE: return box(l | r);
+            case CARET: return box(l ^ r);
+            case LESS_LESS: return box(l << r);
+            default: return box(l >> r);
+        }
+    }
+
+    static Object negate(Object right, Token operation) {
+        if (right instanceof Double) return -(double) right;
+        if (right instanceof Long) return negate((long) right);
+        throw new RuntimeError(operation, "Operand must be number.");
+    }
+
+    static Object complement(Object right, Token operation) {
+        if (right instanceof Long) return box(~(long) right);
+        throw new RuntimeError(operation, "Operand must be integer.");
+    }
+
+    /// numbers are equal when their values are, whatever their types: 0, 0.0 and -0.0 are one
+    /// number, and NaN equals nothing, not even itself
+    static boolean equals(Object left, Object right) {
         if (left == null) return false;
+        if (left instanceof Double && right instanceof Double) return (double) left == (double) right;
+        if (left instanceof Long && right instanceof Double) return compare((long) left, (double) right) == 0;
+        if (left instanceof Double && right instanceof Long) return compare((long) right, (double) left) == 0;
         return left.equals(right);
     }
 
     public static boolean less(Object left, Object right, Token operation) {
         if ((left instanceof Double) && (right instanceof Double)) return (double) left < (double) right;
+        if ((left instanceof Long) && (right instanceof Long)) return (long) left < (long) right;
+        if (left instanceof Long && right instanceof Double) return compare((long) left, (double) right) < 0;
+        if (left instanceof Double && right instanceof Long) return compare((long) right, (double) left) == 1;
         if ((left instanceof String) && (right instanceof String))
             return ((String) left).compareTo((String) right) < 0;
         if ((left instanceof String) && (right instanceof Double)) 
@@ -389,6 +900,36 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operation, "Operands must be two numbers or two strings.");
     }
 
+    static final int UNORDERED = 2;
+
+    /// -1, 0 or 1 as the integer is below, equal to or above the double, UNORDERED for NaN;
+    /// the values are compared exactly, where converting the integer would round it above 2^53
+    static int compare(long left, double right) {
+        if (Double.isNaN(right)) return UNORDERED;
+        if (right >= 0x1p63) return -1;
+        if (right < -0x1p63) return 1;
+        long whole = (long) right;
+        if (left != whole) return left < whole ? -1 : 1;
+        double fraction = right - whole;
+        return fraction > 0 ? -1 : fraction < 0 ? 1 : 0;
+    }
+
+    /// the order sort and bisect put numbers in: the order of '<' and '==', with NaN after
+    /// every other number
+    static int compareNumbers(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) return Long.compare((long) left, (long) right);
+        if (left instanceof Long) {
+            int order = compare((long) left, (double) right);
+            return order == UNORDERED ? -1 : order;
+        }
+        if (right instanceof Long) {
+            int order = compare((long) right, (double) left);
+            return order == UNORDERED ? 1 : -order;
+        }
+        double first = (double) left, second = (double) right;
+        return first == second ? 0 : Double.compare(first, second);
+    }
+
     public static String stringify(Object object) {
         if (object == null) return "nil";
 
@@ -400,23 +941,90 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return object.toString();
     }
 
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         if (object instanceof Double) return (double) object != 0;
+        if (object instanceof Long) return (long) object != 0;
         if (object instanceof String) return !((String) object).isEmpty();
         return true;
     }
 
-    private Object sum(Object left, Object right, Token operation) {
+    public static boolean isNumber(Object object) {
+        return object instanceof Double || object instanceof Long;
+    }
+
+    public static double toDouble(Object number) {
+        if (number instanceof Long) return (long) number;
+        return (double) number;
+    }
+
+    /// integers and doubles holding an integral value are accepted wherever an integer is expected
+    public static boolean isInteger(Object object) {
+        if (object instanceof Long) return true;
+        if (object instanceof Double) return (double) object == (long) (double) object;
+        return false;
+    }
+
+    /// narrows a value accepted by isInteger(), out of range values saturate
+    public static int toInt(Object integer) {
+        long value = integer instanceof Long ? (long) integer : (long) (double) integer;
+        if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        if (value < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+        return (int) value;
+    }
+
+    /// boxes an integer result, small values share their boxes
+    public static Long box(long value) {
+        if (value >= -SMALL_INTEGERS_OFFSET && value < SMALL_INTEGERS.length - SMALL_INTEGERS_OFFSET)
+            return SMALL_INTEGERS[(int) value + SMALL_INTEGERS_OFFSET];
+        return value;
+    }
+
+    public static String character(char c) {
+        return c < CHARACTERS.length ? CHARACTERS[c] : String.valueOf(c);
+    }
+
+    /// lists and strings can be indexed, only lists can be assigned to
+    static boolean indexable(Object object) {
+        return object instanceof MerlinListInstance || object instanceof String || object instanceof stringInstance;
+    }
+
+    /// 'object[index]' of an indexable object
+    static Object index(Object object, Object index, Token bracket) {
+        if (object instanceof MerlinListInstance) return ((MerlinListInstance) object).get(index, bracket);
+        if (object instanceof stringInstance) return ((stringInstance) object).get(index, bracket);
+        return stringInstance.get((String) object, index, bracket);
+    }
+
+    /// 'object[start:end:step]' of an indexable object, the parts left out are nil
+    static Object slice(Object object, Object start, Object end, Object step, Token bracket) {
+        if (object instanceof MerlinListInstance) {
+            MerlinListInstance list = (MerlinListInstance) object;
+            return list.slice(new Slice(list.size(), start, end, step, bracket));
+        }
+        if (object instanceof stringInstance) {
+            stringInstance string = (stringInstance) object;
+            return string.slice(new Slice(string.length(), start, end, step, bracket));
+        }
+        if (object instanceof String) {
+            String string = (String) object;
+            return stringInstance.slice(string, new Slice(string.length(), start, end, step, bracket));
+        }
+
+        throw new RuntimeError(bracket, "Can't take slice from non-list object.");
+    }
+
+    static Object sum(Object left, Object right, Token operation) {
         if ((left instanceof Double) && (right instanceof Double)) {
             return (double) left + (double) right;
         }
+        if ((left instanceof Long) && (right instanceof Long)) {
+            return sum((long) left, (long) right);
+        }
+        if (isNumber(left) && isNumber(right)) return toDouble(left) + toDouble(right);
         if (left instanceof MerlinListInstance && right instanceof MerlinListInstance) {
-            List<Object> newList = new ArrayList<>();
-            newList.addAll(((MerlinListInstance)left).getList());
-            newList.addAll(((MerlinListInstance)right).getList());
-            return new MerlinListInstance(newList);
+            return ((MerlinListInstance) left).concat((MerlinListInstance) right);
         }
         if (left instanceof String) {
             return (String) left + stringify(right);
@@ -427,34 +1035,34 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operation, "TypeError: Operands must be numbers or strings.");
     }
 
+
     @Override
-    public Void visitExpressionStmt(ExpressionStmt stmt) {
+    public Object visitExpressionStmt(ExpressionStmt stmt) {
         evaluate(stmt.expression);
         return null;
     }
 
     @Override
-    public Void visitVarDeclStmt(VarDeclStmt stmt) {
+    public Object visitVarDeclStmt(VarDeclStmt stmt) {
         for (int i = 0, end = stmt.names.size(); i < end; ++i) {
             Object value = null;
             if (stmt.initializers.get(i) != null)
                 value = evaluate(stmt.initializers.get(i));
-            environment.define(stmt.names.get(i).lexeme, value);
+            define(stmt.names.get(i), stmt.slots[i], value);
         }
         return null;
     }
 
     @Override
-    public Void visitBlockStmt(BlockStmt stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Object visitBlockStmt(BlockStmt stmt) {
+        return executeBlock(stmt.statements, new Environment(environment, stmt.size));
     }
 
-    public void executeBlock(List<Stmt> statements, Environment blockEnvironment) {
+    public Object executeBlock(List<Stmt> statements, Environment blockEnvironment) {
         Environment tmp = this.environment;
         this.environment = blockEnvironment;
         try {
-            interprete(statements);
+            return interprete(statements);
         }
         finally {
             this.environment = tmp;
@@ -462,68 +1070,80 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitIFStmt(IFStmt stmt) {
+    public Object visitIFStmt(IFStmt stmt) {
         Object condition = evaluate(stmt.condition);
-        if (isTruthy(condition)) execute(stmt.thenBranch);
-        else if (stmt.elseBranch != null) execute(stmt.elseBranch);
+        if (isTruthy(condition)) return execute(stmt.thenBranch);
+        else if (stmt.elseBranch != null) return execute(stmt.elseBranch);
         
         return null;
     }
 
     @Override
-    public Void visitWHILEStmt(WHILEStmt stmt) {
-        while (isTruthy(evaluate(stmt.condition))) execute(stmt.body);
+    public Object visitWHILEStmt(WHILEStmt stmt) {
+        if (stmt.compiled != null) return resume(stmt.compiled, null);
+        while (isTruthy(evaluate(stmt.condition))) {
+            Object completion = execute(stmt.body);
+            if (completion != null) return completion;
+            if (stmt.function != null && (stmt.compiled = Jit.backEdge(stmt.function, stmt)) != null) {
+                return resume(stmt.compiled, null);
+            }
+        }
         return null;
     }
 
     @Override
-    public Void visitFORStmt(FORStmt stmt) {
-
-        if (stmt.initializer != null) {
-            if (stmt.increment != null) {
-                for (execute(stmt.initializer); isTruthy(evaluate(stmt.condition)); evaluate(stmt.increment)) {
-                    execute(stmt.body);
-                }
-            }
-            else {
-                for (execute(stmt.initializer); isTruthy(evaluate(stmt.condition));) {
-                    execute(stmt.body);
-                }
+    public Object visitFORStmt(FORStmt stmt) {
+        if (stmt.initializer != null) execute(stmt.initializer);
+        if (stmt.compiled != null) return resume(stmt.compiled, null);
+
+        while (isTruthy(evaluate(stmt.condition))) {
+            Object completion = execute(stmt.body);
+            if (completion != null) return completion;
+            if (stmt.increment != null) evaluate(stmt.increment);
+            if (stmt.function != null && (stmt.compiled = Jit.backEdge(stmt.function, stmt)) != null) {
+                return resume(stmt.compiled, null);
             }
         }
-        else {
-            if (stmt.increment != null) {
-                for (;isTruthy(evaluate(stmt.condition)); evaluate(stmt.increment)) {
-                    execute(stmt.body);
-                }
-            }
-            else {
-                for (;isTruthy(evaluate(stmt.condition));) {
-                    execute(stmt.body);
-                }
-            }
-        }
-        
-
         return null;
     }
 
+    /// continues a loop in its compiled code, the loop's frames are written back when it completes
+    private Object resume(CompiledCode code, MerlinIterator cursor) {
+        Object result = code.run(this, environment, cursor, null);
+        if (result == CompiledCode.COMPLETED) return null;
+        if (result == TAIL_CALL) return TAIL_CALL;
+        returnValue = result;
+        return RETURNED;
+    }
+
     @Override
-    public Void visitFunDeclStmt(FunDeclStmt stmt) {
+    public Object visitFunDeclStmt(FunDeclStmt stmt) {
         MerlinFunction function = new MerlinFunction(stmt.name.lexeme, stmt.description, environment);
-        environment.define(stmt.name.lexeme, function);
+        define(stmt.name, stmt.slot, function);
         return null;
     }
 
     @Override
-    public Void visitRETURNStmt(RETURNStmt stmt) {
+    public Object visitRETURNStmt(RETURNStmt stmt) {
         Object value = null;
-        if (stmt.value != null) value = evaluate(stmt.value);
-        throw new Return(value);
+        if (stmt.tail) {
+            value = call((CallExpr) stmt.value, true);
+            if (value == TAIL_CALL) return TAIL_CALL;
+        }
+        else if (stmt.value != null) value = evaluate(stmt.value);
+        returnValue = value;
+        return RETURNED;
+    }
+
+    /// a generator body runs in its InterpretedGenerator, which takes the 'yield' statements
+    /// itself and never passes them here
+    @Override
+    public Object visitYieldStmt(YieldStmt stmt) {
+        throw new RuntimeError(stmt.keyword, "Can't yield outside of a generator.");
     }
 
     @Override
-    public Void visitClassDeclStmt(ClassDeclStmt stmt) {
+    public Object visitClassDeclStmt(ClassDeclStmt stmt) {
         MerlinClass superclass = null;
         if (stmt.superclass != null) {
             Object object = evaluate(stmt.superclass);
@@ -531,13 +1151,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             else throw new RuntimeError(stmt.superclass.name, "Superclass must be class.");
         }
 
-        environment.define(stmt.name.lexeme, null);
+        define(stmt.name, stmt.slot, null);
 
         Environment closure = environment;
         if (superclass != null) {
-            closure = new Environment(environment);
-            closure.define("super", superclass);
+            closure = new Environment(environment, 1);
+            closure.define(0, superclass);
         }
+        /// scope of the method names, shared by all calls
+        closure = new Environment(closure);
         Map<String, MerlinFunction> methods = new HashMap<>();
         MerlinFunction constructor = null;
         for (Stmt.FunDeclStmt function : stmt.methods) {
@@ -548,13 +1170,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         MerlinClass mc = new MerlinClass(stmt.name.lexeme, superclass, methods, constructor);
-        environment.assign(stmt.name.lexeme, mc);
+        define(stmt.name, stmt.slot, mc);
 
         return null;
     }
 
     @Override
-    public Void visitImportStmt(ImportStmt stmt) {
+    public Object visitImportStmt(ImportStmt stmt) {
+        MerlinLib lib = importLib(stmt);
+        if (lib != null) define(stmt.alias, stmt.slot, lib);
+
+        return null;
+    }
+
+    MerlinLib importLib(ImportStmt stmt) {
         boolean isSTD = false;
         String moduleName = stmt.libname.lexeme;
         String aliasName = stmt.alias.lexeme;
@@ -604,37 +1233,39 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
             Interpreter newInterpreter = new Interpreter(moduleName, libs, false);
             Environment libEnvironment =  Merlin.run(newInterpreter, source, fileName);
-            newInterpreter.addDistances(distances);
             MerlinLib lib = new MerlinLib(moduleName, aliasName, libEnvironment);
             libs.put(lib.name, lib);
         }
 
-        MerlinLib lib = libs.get(moduleName);
-        environment.define(lib.alias, lib);
-
-        return null;
+        return libs.get(moduleName);
     }
 
     @Override
-    public Void visitForEachStmt(ForEachStmt stmt) {
-        Environment newEnv = new Environment(environment);
+    public Object visitForEachStmt(ForEachStmt stmt) {
+        Environment newEnv = new Environment(environment, 1);
         Environment tmp = environment;
 
         try {
             environment = newEnv;
+            Range range = rangeCallee(stmt.iterable);
+            if (range != null) return countedLoop(stmt, range);
+
             Object expr = evaluate(stmt.iterable);
             if (!(expr instanceof MerlinIterable)) {
                 throw new RuntimeError(stmt.in, "Expression after 'in' must be iterable.");
             }
 
-            MerlinIterable iterable = (MerlinIterable) expr;
+            MerlinIterator cursor = ((MerlinIterable) expr).iterator();
+            if (stmt.compiled != null) return resume(stmt.compiled, cursor);
 
-            for (; !iterable.isAtEnd(); ) {
-                environment.assign(stmt.iter.name.lexeme, iterable.next(), distances.get(stmt.iter));
-                execute(stmt.body);
+            while (hasNext(cursor)) {
+                assign(stmt.iter, next(cursor));
+                Object completion = execute(stmt.body);
+                if (completion != null) return completion;
+                if (stmt.function != null && (stmt.compiled = Jit.backEdge(stmt.function, stmt)) != null) {
+                    return resume(stmt.compiled, cursor);
+                }
             }
-
-            iterable.reset();
             return null;
         }
         finally {
@@ -642,10 +1273,56 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    /// the cursors of lists and strings are final classes, testing for them first binds the
+    /// calls statically where the interface call would dispatch
+    static boolean hasNext(MerlinIterator cursor) {
+        if (cursor instanceof ListCursor) return ((ListCursor) cursor).hasNext();
+        if (cursor instanceof StringCursor) return ((StringCursor) cursor).hasNext();
+        return cursor.hasNext();
+    }
+
+    static Object next(MerlinIterator cursor) {
+        if (cursor instanceof ListCursor) return ((ListCursor) cursor).next();
+        if (cursor instanceof StringCursor) return ((StringCursor) cursor).next();
+        return cursor.next();
+    }
+
+    /// the builtin range when the iterable is a direct call of it; looking the name up has no
+    /// side effects, so a shadowed or reassigned 'range' just takes the generic path
+    private Range rangeCallee(Expr iterable) {
+        if (!(iterable instanceof CallExpr)) return null;
+        CallExpr call = (CallExpr) iterable;
+        if (!(call.callee instanceof VariableExpr)) return null;
+        Object callee = evaluate(call.callee);
+        return callee instanceof Range ? (Range) callee : null;
+    }
+
+    /// 'for i in range(...)' counts with a primitive instead of iterating a list,
+    /// only the loop variable is written per iteration
+    private Object countedLoop(ForEachStmt stmt, Range range) {
+        CallExpr call = (CallExpr) stmt.iterable;
+        MerlinCallable.checkArity(call, range);
+        RangeList values = range.values(evaluateArguments(call.arguments), call.paren);
+        if (stmt.compiled != null) return resume(stmt.compiled, new MerlinListInstance(values).iterator());
+
+        long value = values.start, step = values.step;
+        for (int i = 0, size = values.size(); i < size; ++i, value += step) {
+            assign(stmt.iter, box(value));
+            Object completion = execute(stmt.body);
+            if (completion != null) return completion;
+            if (stmt.function != null && (stmt.compiled = Jit.backEdge(stmt.function, stmt)) != null) {
+                /// the compiled loop goes on with the values not taken yet
+                RangeList rest = new RangeList(value + step, step, size - i - 1);
+                return resume(stmt.compiled, new MerlinListInstance(rest).iterator());
+            }
+        }
+        return null;
+    }
+
     @Override
-    public Void visitEnumStmt(EnumStmt stmt) {
+    public Object visitEnumStmt(EnumStmt stmt) {
         MerlinEnum merlinEnum = new MerlinEnum(stmt.consts);
-        environment.define(stmt.name.lexeme, merlinEnum);
+        define(stmt.name, stmt.slot, merlinEnum);
         return null;
     }
 
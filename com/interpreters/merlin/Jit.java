@@ -0,0 +1,87 @@
+package com.interpreters.merlin;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import com.interpreters.merlin.Expr.FunctionExpr;
+
+/// Decides when functions and loops are compiled to JVM bytecode and loads the result
+/// as hidden classes. Every FunctionExpr counts its invocations and the back edges taken
+/// by its loops; a function whose invocations get hot is compiled as a whole, a loop that
+/// keeps iterating once its function is hot is compiled on its own and entered mid-flight.
+final class Jit {
+
+    private Jit() {}
+
+    /// off unless asked for: on list heavy scripts the generated classes take longer to warm up
+    /// in the JVM than they save, so lists.merlin in benchmarks/ runs slower with them
+    static boolean enabled = false;
+    static int invocationThreshold = 1000;
+    static int backEdgeThreshold = 10000;
+    /// after that many failed guards a function stays interpreted
+    static final int MAX_DEOPTIMIZATIONS = 8;
+
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(void.class);
+    private static int counter = 0;
+
+    static void configure(String mode) {
+        switch (mode) {
+            case "on": enabled = true; break;
+            case "off": enabled = false; break;
+            case "eager":
+                enabled = true;
+                invocationThreshold = 2;
+                backEdgeThreshold = 2;
+                break;
+            default: throw new IllegalArgumentException(mode);
+        }
+    }
+
+    /// called on every interpreted invocation, returns the compiled body once it is hot;
+    /// a generator body is suspended between statements, so it always stays interpreted
+    static CompiledCode invoked(FunctionExpr function) {
+        if (!enabled || function.uncompilable || function.captures || function.generator) return null;
+        if (++function.invocations < invocationThreshold && function.backEdges < backEdgeThreshold) return null;
+        return function.compiled = compile(function, null);
+    }
+
+    /// called at the head of every interpreted loop iteration, returns the compiled loop once it is hot
+    static CompiledCode backEdge(FunctionExpr function, Stmt loop) {
+        if (!enabled || function == null || function.uncompilable || function.captures
+                || function.generator) return null;
+        if (++function.backEdges < backEdgeThreshold) return null;
+        return compile(function, loop);
+    }
+
+    static void deoptimized(FunctionExpr function) {
+        function.invocations = 0;
+        function.backEdges = 0;
+        if (++function.deoptimizations >= MAX_DEOPTIMIZATIONS) function.uncompilable = true;
+    }
+
+    private static CompiledCode compile(FunctionExpr function, Stmt loop) {
+        try {
+            JitCompiler compiler = new JitCompiler(function, loop, "com/interpreters/merlin/Compiled$" + counter++);
+            byte[] bytes = compiler.compile();
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                .defineHiddenClassWithClassData(bytes, compiler.constants(), true);
+            CompiledCode code = (CompiledCode) lookup.findConstructor(lookup.lookupClass(), CONSTRUCTOR).invoke();
+            code.function = function;
+            code.owner = loop == null ? function : loop;
+            return code;
+        }
+        catch (JitCompiler.Unsupported | ClassWriter.TooLarge exception) {
+            function.uncompilable = true;
+            return null;
+        }
+        catch (RuntimeException | Error exception) {
+            /// a class that fails verification is a bug of the compiler, not of the program
+            throw exception;
+        }
+        catch (Throwable throwable) {
+            /// the checked exceptions of the lookups, they don't happen for the class defined above
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+}
@@ -0,0 +1,1120 @@
+package com.interpreters.merlin;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.interpreters.merlin.ClassWriter.Label;
+import com.interpreters.merlin.Expr.AssignExpr;
+import com.interpreters.merlin.Expr.BinaryExpr;
+import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
+import com.interpreters.merlin.Expr.FunctionExpr;
+import com.interpreters.merlin.Expr.GetExpr;
+import com.interpreters.merlin.Expr.GroupingExpr;
+import com.interpreters.merlin.Expr.ListComprExpr;
+import com.interpreters.merlin.Expr.ListExpr;
+import com.interpreters.merlin.Expr.ListGetExpr;
+import com.interpreters.merlin.Expr.ListSetExpr;
+import com.interpreters.merlin.Expr.LiteralExpr;
+import com.interpreters.merlin.Expr.LogicExpr;
+import com.interpreters.merlin.Expr.SetExpr;
+import com.interpreters.merlin.Expr.SliceExpr;
+import com.interpreters.merlin.Expr.SuperCallExpr;
+import com.interpreters.merlin.Expr.SuperExpr;
+import com.interpreters.merlin.Expr.TernaryExpr;
+import com.interpreters.merlin.Expr.ThisExpr;
+import com.interpreters.merlin.Expr.UnaryExpr;
+import com.interpreters.merlin.Expr.VariableExpr;
+import com.interpreters.merlin.Stmt.BlockStmt;
+import com.interpreters.merlin.Stmt.ClassDeclStmt;
+import com.interpreters.merlin.Stmt.EnumStmt;
+import com.interpreters.merlin.Stmt.ExpressionStmt;
+import com.interpreters.merlin.Stmt.FORStmt;
+import com.interpreters.merlin.Stmt.ForEachStmt;
+import com.interpreters.merlin.Stmt.FunDeclStmt;
+import com.interpreters.merlin.Stmt.IFStmt;
+import com.interpreters.merlin.Stmt.ImportStmt;
+import com.interpreters.merlin.Stmt.RETURNStmt;
+import com.interpreters.merlin.Stmt.VarDeclStmt;
+import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
+
+import static com.interpreters.merlin.ClassWriter.*;
+import static com.interpreters.merlin.Specialization.*;
+
+/// Translates a function body, or one of its loops, to the run() method of a CompiledCode
+/// subclass. Variables of the unit live in JVM locals, everything outside of it is reached
+/// through the closure environment. Nodes the interpreter specialized get an inline fast
+/// path behind a type guard, the slow path goes through JitRuntime and deoptimizes.
+final class JitCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    /// the unit uses a construct the JIT does not translate, it stays interpreted
+    static class Unsupported extends RuntimeException {
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String LONG = "java/lang/Long";
+    private static final String DOUBLE = "java/lang/Double";
+    private static final String LIST = "java/util/List";
+    private static final String ARRAY_LIST = "java/util/ArrayList";
+    private static final String ARRAY = "[L" + OBJECT + ";";
+    private static final String INTERPRETER = "com/interpreters/merlin/Interpreter";
+    private static final String ENVIRONMENT = "com/interpreters/merlin/Environment";
+    /// referencing the class keeps javac compiling it, only generated code calls into it
+    private static final String RUNTIME = JitRuntime.class.getName().replace('.', '/');
+    private static final String CODE = "com/interpreters/merlin/CompiledCode";
+    private static final String CALLABLE = "com/interpreters/merlin/MerlinCallable";
+    private static final String INSTANCE = "com/interpreters/merlin/MerlinInstance";
+    private static final String LIST_INSTANCE = "com/interpreters/merlin/MerlinListInstance";
+    private static final String ITERATOR = "com/interpreters/merlin/MerlinIterator";
+    private static final String CACHE = "com/interpreters/merlin/InlineCache";
+    private static final String CALL = "com/interpreters/merlin/Expr$CallExpr";
+
+    private static final String RUN = "(L" + INTERPRETER + ";L" + ENVIRONMENT + ";L" + OBJECT + ";L" + OBJECT + ";)L" + OBJECT + ";";
+
+    /// locals of run(): this, interpreter, environment, argument, receiver, closure
+    private static final int INTERPRETER_LOCAL = 1;
+    private static final int ENVIRONMENT_LOCAL = 2;
+    private static final int ARGUMENT_LOCAL = 3;
+    private static final int RECEIVER_LOCAL = 4;
+    private static final int CLOSURE_LOCAL = 5;
+
+    private final FunctionExpr function;
+    private final Stmt loop;
+    private final ClassWriter writer;
+    private final List<Object> constants = new ArrayList<>();
+    private final List<String> descriptors = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new IdentityHashMap<>();
+    /// JVM locals of the frames inside the unit, innermost last
+    private final List<int[]> frames = new ArrayList<>();
+    private ClassWriter.Method method;
+    /// set while compiling the call of a 'return' in tail position
+    private boolean tail = false;
+
+    JitCompiler(FunctionExpr function, Stmt loop, String name) {
+        this.function = function;
+        this.loop = loop;
+        this.writer = new ClassWriter(name, CODE);
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+
+    byte[] compile() {
+        method = writer.method(ACC_PUBLIC, "run", RUN, 5);
+        method.newLocal(1);
+        if (loop == null) compileFunction();
+        else compileLoop();
+
+        ClassWriter.Method constructor = writer.method(ACC_PUBLIC, "<init>", "()V", 1);
+        constructor.local(ALOAD, 0);
+        constructor.invoke(INVOKESPECIAL, CODE, "<init>", "()V");
+        constructor.op(RETURN);
+
+        initializeConstants();
+        return writer.toByteArray();
+    }
+
+    private void compileFunction() {
+        method.local(ALOAD, ENVIRONMENT_LOCAL);
+        method.local(ASTORE, CLOSURE_LOCAL);
+        int[] locals = pushFrame(function.size);
+        for (int i = 0; i < function.parameters.size(); ++i) {
+            method.local(ALOAD, ARGUMENT_LOCAL);
+            method.type(CHECKCAST, ARRAY);
+            method.iconst(i);
+            method.op(AALOAD);
+            method.local(ASTORE, locals[i]);
+        }
+        if (function.method) {
+            method.local(ALOAD, RECEIVER_LOCAL);
+            method.local(ASTORE, locals[function.parameters.size()]);
+        }
+        statements(function.body);
+        if (method.isReachable()) {
+            method.op(ACONST_NULL);
+            method.op(ARETURN);
+        }
+    }
+
+    /// a loop unit takes over the frames of the interpreted function, runs the
+    /// loop from the head of its next iteration and writes the frames back
+    private void compileLoop() {
+        List<Integer> sizes = new ArrayList<>();
+        sizes.add(function.size);
+        if (!path(function.body, sizes)) throw new Unsupported();
+
+        int outer = sizes.size();
+        method.local(ALOAD, ENVIRONMENT_LOCAL);
+        method.iconst(outer);
+        method.invoke(INVOKESTATIC, RUNTIME, "ancestor", "(L" + ENVIRONMENT + ";I)L" + ENVIRONMENT + ";");
+        method.local(ASTORE, CLOSURE_LOCAL);
+        for (int i = 0; i < outer; ++i) {
+            int[] locals = pushFrame(sizes.get(i));
+            for (int slot = 0; slot < locals.length; ++slot) {
+                method.local(ALOAD, ENVIRONMENT_LOCAL);
+                method.iconst(outer - 1 - i);
+                method.iconst(slot);
+                method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "getAt", "(II)L" + OBJECT + ";");
+                method.local(ASTORE, locals[slot]);
+            }
+        }
+
+        if (loop instanceof WHILEStmt) whileLoop((WHILEStmt) loop);
+        else if (loop instanceof FORStmt) forLoop((FORStmt) loop, false);
+        else {
+            ForEachStmt stmt = (ForEachStmt) loop;
+            method.local(ALOAD, ARGUMENT_LOCAL);
+            method.type(CHECKCAST, ITERATOR);
+            forEachLoop(stmt);
+        }
+
+        for (int i = 0; i < outer; ++i) {
+            int[] locals = frames.get(i);
+            for (int slot = 0; slot < locals.length; ++slot) {
+                method.local(ALOAD, ENVIRONMENT_LOCAL);
+                method.iconst(outer - 1 - i);
+                method.iconst(slot);
+                method.local(ALOAD, locals[slot]);
+                method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "assignAt", "(IIL" + OBJECT + ";)V");
+            }
+        }
+        method.field(GETSTATIC, CODE, "COMPLETED", "L" + OBJECT + ";");
+        method.op(ARETURN);
+    }
+
+    /// collects the sizes of the frames enclosing the loop, a for-in loop owns its frame
+    private boolean path(List<Stmt> statements, List<Integer> sizes) {
+        for (Stmt stmt : statements) {
+            if (path(stmt, sizes)) return true;
+        }
+        return false;
+    }
+
+    private boolean path(Stmt stmt, List<Integer> sizes) {
+        if (stmt == null) return false;
+        if (stmt == loop) {
+            if (stmt instanceof ForEachStmt) sizes.add(1);
+            return true;
+        }
+        if (stmt instanceof BlockStmt) {
+            sizes.add(((BlockStmt) stmt).size);
+            if (path(((BlockStmt) stmt).statements, sizes)) return true;
+            sizes.remove(sizes.size() - 1);
+        }
+        else if (stmt instanceof IFStmt) {
+            return path(((IFStmt) stmt).thenBranch, sizes) || path(((IFStmt) stmt).elseBranch, sizes);
+        }
+        else if (stmt instanceof WHILEStmt) return path(((WHILEStmt) stmt).body, sizes);
+        else if (stmt instanceof FORStmt) return path(((FORStmt) stmt).body, sizes);
+        else if (stmt instanceof ForEachStmt) {
+            sizes.add(1);
+            if (path(((ForEachStmt) stmt).body, sizes)) return true;
+            sizes.remove(sizes.size() - 1);
+        }
+        return false;
+    }
+
+    /// constants are static final fields of the generated class, filled from its class data
+    private void initializeConstants() {
+        ClassWriter.Method clinit = writer.method(ACC_STATIC, "<clinit>", "()V", 0);
+        if (!constants.isEmpty()) {
+            clinit.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                "()Ljava/lang/invoke/MethodHandles$Lookup;");
+            clinit.ldc(writer.string("_"), 1);
+            clinit.ldc(writer.classRef("[L" + OBJECT + ";"), 1);
+            clinit.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)L" + OBJECT + ";");
+            clinit.type(CHECKCAST, "[L" + OBJECT + ";");
+            clinit.local(ASTORE, 0);
+            for (int i = 0; i < constants.size(); ++i) {
+                String descriptor = descriptors.get(i);
+                writer.field(ACC_STATIC | ACC_FINAL, "k" + i, descriptor);
+                clinit.local(ALOAD, 0);
+                clinit.iconst(i);
+                clinit.op(AALOAD);
+                clinit.type(CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+                clinit.field(PUTSTATIC, writer.name(), "k" + i, descriptor);
+            }
+        }
+        clinit.op(RETURN);
+    }
+
+    private void constant(Object value, String type) {
+        Integer index = constantIndexes.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            descriptors.add("L" + type + ";");
+            constantIndexes.put(value, index);
+        }
+        method.field(GETSTATIC, writer.name(), "k" + index, descriptors.get(index));
+    }
+
+    private void token(Token token) {
+        constant(token, "com/interpreters/merlin/Token");
+    }
+
+    /// frames and variables
+
+    private int[] pushFrame(int size) {
+        int[] locals = new int[size];
+        for (int i = 0; i < size; ++i) {
+            locals[i] = method.newLocal(1);
+            method.op(ACONST_NULL);
+            method.local(ASTORE, locals[i]);
+        }
+        frames.add(locals);
+        return locals;
+    }
+
+    private void popFrame() {
+        frames.remove(frames.size() - 1);
+    }
+
+    private int local(int depth, int slot) {
+        if (slot < 0) throw new Unsupported();
+        return frames.get(frames.size() - 1 - depth)[slot];
+    }
+
+    private void load(int depth, int slot, Token name) {
+        if (depth < frames.size()) {
+            method.local(ALOAD, local(depth, slot));
+            return;
+        }
+        method.local(ALOAD, CLOSURE_LOCAL);
+        if (slot < 0) {
+            method.ldc(writer.string(name.lexeme), 1);
+            method.iconst(depth - frames.size());
+            method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "get", "(Ljava/lang/String;I)L" + OBJECT + ";");
+        }
+        else {
+            method.iconst(depth - frames.size());
+            method.iconst(slot);
+            method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "getAt", "(II)L" + OBJECT + ";");
+        }
+    }
+
+    /// stores the value on top of the stack
+    private void store(VariableExpr variable) {
+        if (variable.depth < frames.size()) {
+            method.local(ASTORE, local(variable.depth, variable.slot));
+            return;
+        }
+        int value = method.newLocal(1);
+        method.local(ASTORE, value);
+        method.local(ALOAD, CLOSURE_LOCAL);
+        if (variable.slot < 0) {
+            method.ldc(writer.string(variable.name.lexeme), 1);
+            method.local(ALOAD, value);
+            method.iconst(variable.depth - frames.size());
+            method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "assign", "(Ljava/lang/String;L" + OBJECT + ";I)V");
+        }
+        else {
+            method.iconst(variable.depth - frames.size());
+            method.iconst(variable.slot);
+            method.local(ALOAD, value);
+            method.invoke(INVOKEVIRTUAL, ENVIRONMENT, "assignAt", "(IIL" + OBJECT + ";)V");
+        }
+    }
+
+    /// statements
+
+    private void statements(List<Stmt> statements) {
+        for (Stmt stmt : statements) {
+            /// code after a return is never executed
+            if (!method.isReachable()) return;
+            stmt.accept(this);
+        }
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    /// a part of an expression that can be left out, nil then
+    private void optional(Expr expr) {
+        if (expr != null) compile(expr);
+        else method.op(ACONST_NULL);
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        compile(stmt.expression);
+        method.op(POP);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        pushFrame(stmt.size);
+        statements(stmt.statements);
+        popFrame();
+        return null;
+    }
+
+    @Override
+    public Void visitIFStmt(IFStmt stmt) {
+        Label otherwise = new Label(), end = new Label();
+        branch(stmt.condition, false, otherwise);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch != null) {
+            if (method.isReachable()) method.jump(GOTO, end);
+            method.bind(otherwise);
+            stmt.elseBranch.accept(this);
+            method.bind(end);
+        }
+        else method.bind(otherwise);
+        return null;
+    }
+
+    @Override
+    public Void visitWHILEStmt(WHILEStmt stmt) {
+        whileLoop(stmt);
+        return null;
+    }
+
+    private void whileLoop(WHILEStmt stmt) {
+        Label head = new Label(), end = new Label();
+        method.bind(head);
+        branch(stmt.condition, false, end);
+        stmt.body.accept(this);
+        if (method.isReachable()) method.jump(GOTO, head);
+        method.bind(end);
+    }
+
+    @Override
+    public Void visitFORStmt(FORStmt stmt) {
+        forLoop(stmt, true);
+        return null;
+    }
+
+    private void forLoop(FORStmt stmt, boolean initialize) {
+        if (initialize && stmt.initializer != null) stmt.initializer.accept(this);
+        Label head = new Label(), end = new Label();
+        method.bind(head);
+        branch(stmt.condition, false, end);
+        stmt.body.accept(this);
+        if (method.isReachable()) {
+            if (stmt.increment != null) {
+                compile(stmt.increment);
+                method.op(POP);
+            }
+            method.jump(GOTO, head);
+        }
+        method.bind(end);
+    }
+
+    @Override
+    public Void visitForEachStmt(ForEachStmt stmt) {
+        pushFrame(1);
+        compile(stmt.iterable);
+        token(stmt.in);
+        method.invoke(INVOKESTATIC, RUNTIME, "iterator", "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + ITERATOR + ";");
+        popFrame();
+        forEachLoop(stmt);
+        return null;
+    }
+
+    /// the cursor is on the stack, a loop unit resumes here with the frame of the loop already set up
+    private void forEachLoop(ForEachStmt stmt) {
+        if (stmt != loop) pushFrame(1);
+        int cursor = method.newLocal(1);
+        method.local(ASTORE, cursor);
+        Label head = new Label(), end = new Label();
+        method.bind(head);
+        hasNext(cursor, end);
+        next(cursor);
+        store(stmt.iter);
+        stmt.body.accept(this);
+        if (method.isReachable()) method.jump(GOTO, head);
+        method.bind(end);
+        if (stmt != loop) popFrame();
+    }
+
+    /// jumps to 'end' when the cursor has no more elements
+    private void hasNext(int cursor, Label end) {
+        method.local(ALOAD, cursor);
+        method.invoke(INVOKESTATIC, INTERPRETER, "hasNext", "(L" + ITERATOR + ";)Z");
+        method.jump(IFEQ, end);
+    }
+
+    private void next(int cursor) {
+        method.local(ALOAD, cursor);
+        method.invoke(INVOKESTATIC, INTERPRETER, "next", "(L" + ITERATOR + ";)L" + OBJECT + ";");
+    }
+
+    @Override
+    public Void visitRETURNStmt(RETURNStmt stmt) {
+        tail = stmt.tail;
+        if (stmt.value != null) compile(stmt.value);
+        else method.op(ACONST_NULL);
+        method.op(ARETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(YieldStmt stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitVarDeclStmt(VarDeclStmt stmt) {
+        for (int i = 0; i < stmt.names.size(); ++i) {
+            Expr initializer = stmt.initializers.get(i);
+            if (initializer != null) compile(initializer);
+            else method.op(ACONST_NULL);
+            method.local(ASTORE, local(0, stmt.slots[i]));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt(FunDeclStmt stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitClassDeclStmt(ClassDeclStmt stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitEnumStmt(EnumStmt stmt) {
+        throw new Unsupported();
+    }
+
+    /// conditions
+
+    /// jumps to the target when the truthiness of the expression equals 'when', falls through otherwise
+    private void branch(Expr expr, boolean when, Label target) {
+        if (expr instanceof GroupingExpr) {
+            branch(((GroupingExpr) expr).expression, when, target);
+        }
+        else if (expr instanceof LiteralExpr) {
+            if (Interpreter.isTruthy(((LiteralExpr) expr).value) == when) method.jump(GOTO, target);
+        }
+        else if (expr instanceof UnaryExpr && ((UnaryExpr) expr).operation.type == TokenType.BANG) {
+            branch(((UnaryExpr) expr).right, !when, target);
+        }
+        else if (expr instanceof LogicExpr) {
+            LogicExpr logic = (LogicExpr) expr;
+            boolean or = logic.operation.type == TokenType.OR;
+            if (or == when) {
+                branch(logic.left, when, target);
+                branch(logic.right, when, target);
+            }
+            else {
+                Label skip = new Label();
+                branch(logic.left, !when, skip);
+                branch(logic.right, when, target);
+                method.bind(skip);
+            }
+        }
+        else if (expr instanceof BinaryExpr && isComparison(((BinaryExpr) expr).kind)) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            Label slow = new Label(), end = new Label();
+            guarded(binary, slow);
+            compare(binary.kind, when, target);
+            method.jump(GOTO, end);
+            method.bind(slow);
+            slowBinary(binary);
+            truthy(when, target);
+            method.bind(end);
+        }
+        else {
+            compile(expr);
+            truthy(when, target);
+        }
+    }
+
+    private void truthy(boolean when, Label target) {
+        method.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(L" + OBJECT + ";)Z");
+        method.jump(when ? IFNE : IFEQ, target);
+    }
+
+    /// binary nodes
+
+    private static boolean isLong(int kind) {
+        return kind >= ADD_LONG && kind <= NOT_EQUAL_LONG;
+    }
+
+    private static boolean isDouble(int kind) {
+        return kind >= ADD_DOUBLE && kind <= NOT_EQUAL_DOUBLE;
+    }
+
+    private static boolean isComparison(int kind) {
+        return (kind >= LESS_DOUBLE && kind <= NOT_EQUAL_DOUBLE) || (kind >= LESS_LONG && kind <= NOT_EQUAL_LONG);
+    }
+
+    /// evaluates both operands, jumps to 'slow' unless they have the types of the node's
+    /// specialization and leaves them unboxed on the stack otherwise
+    private int[] operands;
+
+    private void guarded(BinaryExpr expr, Label slow) {
+        int left = method.newLocal(1), right = method.newLocal(1);
+        compile(expr.left);
+        method.local(ASTORE, left);
+        compile(expr.right);
+        method.local(ASTORE, right);
+        operands = new int[] {left, right};
+        guard(expr.kind, left, right, slow);
+    }
+
+    /// jumps to 'slow' unless both locals have the types of the specialization 'kind',
+    /// leaves them unboxed on the stack otherwise
+    private void guard(int kind, int left, int right, Label slow) {
+        String box = isLong(kind) ? LONG : DOUBLE;
+        method.local(ALOAD, left);
+        method.type(INSTANCEOF, box);
+        method.jump(IFEQ, slow);
+        method.local(ALOAD, right);
+        method.type(INSTANCEOF, box);
+        method.jump(IFEQ, slow);
+
+        unbox(left, box);
+        unbox(right, box);
+    }
+
+    private void unbox(int local, String box) {
+        method.local(ALOAD, local);
+        method.type(CHECKCAST, box);
+        if (box.equals(LONG)) method.invoke(INVOKEVIRTUAL, LONG, "longValue", "()J");
+        else method.invoke(INVOKEVIRTUAL, DOUBLE, "doubleValue", "()D");
+    }
+
+    /// the slow path of the last guarded() node
+    private void slowBinary(BinaryExpr expr) {
+        constant(expr, "com/interpreters/merlin/Expr$BinaryExpr");
+        method.local(ALOAD, operands[0]);
+        method.local(ALOAD, operands[1]);
+        method.local(ALOAD, 0);
+        method.invoke(INVOKESTATIC, RUNTIME, "binary",
+            "(Lcom/interpreters/merlin/Expr$BinaryExpr;L" + OBJECT + ";L" + OBJECT + ";L" + CODE + ";)L" + OBJECT + ";");
+    }
+
+    /// consumes two unboxed operands and jumps to the target when the comparison equals 'when'
+    private void compare(int kind, boolean when, Label target) {
+        int jump;
+        if (isLong(kind)) {
+            method.op(LCMP);
+            switch (kind) {
+                case LESS_LONG: jump = IFGE; break;
+                case LESS_EQUAL_LONG: jump = IFGT; break;
+                case GREATER_LONG: jump = IFLE; break;
+                case GREATER_EQUAL_LONG: jump = IFLT; break;
+                case EQUAL_LONG: jump = IFNE; break;
+                default: jump = IFEQ;
+            }
+        }
+        else {
+            /// same formulas as Interpreter.compareDouble, NaN included
+            int left = method.newLocal(2), right = method.newLocal(2);
+            method.local(DSTORE, right);
+            method.local(DSTORE, left);
+            switch (kind) {
+                case LESS_DOUBLE:
+                    doubles(left, right, DCMPG);
+                    jump = IFGE;
+                    break;
+                case LESS_EQUAL_DOUBLE:
+                    doubles(right, left, DCMPG);
+                    jump = IFLT;
+                    break;
+                case GREATER_DOUBLE:
+                    doubles(right, left, DCMPG);
+                    jump = IFGE;
+                    break;
+                case GREATER_EQUAL_DOUBLE:
+                    doubles(left, right, DCMPG);
+                    jump = IFLT;
+                    break;
+                default:
+                    doubles(left, right, DCMPL);
+                    jump = kind == EQUAL_DOUBLE ? IFNE : IFEQ;
+            }
+        }
+        /// 'jump' leaves when the comparison is false
+        method.jump(when ? invert(jump) : jump, target);
+    }
+
+    private void doubles(int first, int second, int opcode) {
+        method.local(DLOAD, first);
+        method.local(DLOAD, second);
+        method.op(opcode);
+    }
+
+    private static int invert(int jump) {
+        switch (jump) {
+            case IFEQ: return IFNE;
+            case IFNE: return IFEQ;
+            case IFLT: return IFGE;
+            case IFGE: return IFLT;
+            case IFGT: return IFLE;
+            default: return IFGT;
+        }
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        int kind = expr.kind;
+        if (!isLong(kind) && !isDouble(kind)) {
+            compile(expr.left);
+            int left = method.newLocal(1);
+            method.local(ASTORE, left);
+            compile(expr.right);
+            int right = method.newLocal(1);
+            method.local(ASTORE, right);
+            operands = new int[] {left, right};
+            slowBinary(expr);
+            return null;
+        }
+
+        Label slow = new Label(), end = new Label();
+        if (isComparison(kind)) {
+            Label no = new Label();
+            guarded(expr, slow);
+            int[] saved = operands;
+            compare(kind, false, no);
+            method.field(GETSTATIC, BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+            method.jump(GOTO, end);
+            method.bind(no);
+            method.field(GETSTATIC, BOOLEAN, "FALSE", "L" + BOOLEAN + ";");
+            method.jump(GOTO, end);
+            operands = saved;
+        }
+        else {
+            guarded(expr, slow);
+            int[] saved = operands;
+            arithmetic(kind, slow);
+            method.jump(GOTO, end);
+            operands = saved;
+        }
+        method.bind(slow);
+        slowBinary(expr);
+        method.bind(end);
+        return null;
+    }
+
+    /// consumes two unboxed operands of an arithmetic specialization and leaves the boxed
+    /// result, jumps to 'slow' with an empty stack when the operation must report an error
+    private void arithmetic(int kind, Label slow) {
+        boolean isLong = isLong(kind);
+        int size = 2, right = method.newLocal(size), left = method.newLocal(size);
+        method.local(isLong ? LSTORE : DSTORE, right);
+        method.local(isLong ? LSTORE : DSTORE, left);
+        if (kind == MODULO_LONG || kind == DIVIDE_DOUBLE || kind == MODULO_DOUBLE) {
+            /// division by zero is reported by the slow path
+            method.local(isLong ? LLOAD : DLOAD, right);
+            method.op(isLong ? LCONST_0 : DCONST_0);
+            method.op(isLong ? LCMP : DCMPL);
+            method.jump(IFEQ, slow);
+        }
+        method.local(isLong ? LLOAD : DLOAD, left);
+        method.local(isLong ? LLOAD : DLOAD, right);
+        switch (kind) {
+            /// these give a double when the result overflows, and box it themselves
+            case ADD_LONG: method.invoke(INVOKESTATIC, INTERPRETER, "sum", "(JJ)L" + OBJECT + ";"); return;
+            case SUBTRACT_LONG: method.invoke(INVOKESTATIC, INTERPRETER, "subtract", "(JJ)L" + OBJECT + ";"); return;
+            case MULTIPLY_LONG: method.invoke(INVOKESTATIC, INTERPRETER, "multiply", "(JJ)L" + OBJECT + ";"); return;
+            case MODULO_LONG: method.op(LREM); break;
+            case ADD_DOUBLE: method.op(DADD); break;
+            case SUBTRACT_DOUBLE: method.op(DSUB); break;
+            case MULTIPLY_DOUBLE: method.op(DMUL); break;
+            case DIVIDE_DOUBLE: method.op(DDIV); break;
+            default: method.invoke(INVOKESTATIC, INTERPRETER, "remainder", "(DD)D");
+        }
+        if (isLong) method.invoke(INVOKESTATIC, INTERPRETER, "box", "(J)L" + LONG + ";");
+        else method.invoke(INVOKESTATIC, DOUBLE, "valueOf", "(D)L" + DOUBLE + ";");
+    }
+
+    /// expressions
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        Object value = expr.value;
+        if (value == null) method.op(ACONST_NULL);
+        else if (value instanceof Boolean) {
+            method.field(GETSTATIC, BOOLEAN, (boolean) value ? "TRUE" : "FALSE", "L" + BOOLEAN + ";");
+        }
+        else constant(value, OBJECT);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        if (expr.operation.type == TokenType.BANG) {
+            Label no = new Label(), end = new Label();
+            branch(expr.right, true, no);
+            method.field(GETSTATIC, BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+            method.jump(GOTO, end);
+            method.bind(no);
+            method.field(GETSTATIC, BOOLEAN, "FALSE", "L" + BOOLEAN + ";");
+            method.bind(end);
+            return null;
+        }
+
+        compile(expr.right);
+        int right = method.newLocal(1);
+        method.local(ASTORE, right);
+        Label slow = new Label(), end = new Label();
+        if (expr.kind == NEGATE_LONG || expr.kind == NEGATE_DOUBLE) {
+            String box = expr.kind == NEGATE_LONG ? LONG : DOUBLE;
+            method.local(ALOAD, right);
+            method.type(INSTANCEOF, box);
+            method.jump(IFEQ, slow);
+            unbox(right, box);
+            if (expr.kind == NEGATE_LONG) method.invoke(INVOKESTATIC, INTERPRETER, "negate", "(J)L" + OBJECT + ";");
+            else {
+                method.op(DNEG);
+                method.invoke(INVOKESTATIC, DOUBLE, "valueOf", "(D)L" + DOUBLE + ";");
+            }
+            method.jump(GOTO, end);
+        }
+        method.bind(slow);
+        constant(expr, "com/interpreters/merlin/Expr$UnaryExpr");
+        method.local(ALOAD, right);
+        method.local(ALOAD, 0);
+        method.invoke(INVOKESTATIC, RUNTIME, "unary",
+            "(Lcom/interpreters/merlin/Expr$UnaryExpr;L" + OBJECT + ";L" + CODE + ";)L" + OBJECT + ";");
+        method.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        load(expr.depth, expr.slot, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr expr) {
+        compile(expr.value);
+        method.op(DUP);
+        store(expr.object);
+        return null;
+    }
+
+    /// the target is read and written through the same instance or list and index locals
+    @Override
+    public Void visitCompoundExpr(CompoundExpr expr) {
+        int object = -1, index = -1;
+        if (expr.target instanceof VariableExpr) {
+            compile(expr.target);
+        }
+        else if (expr.target instanceof GetExpr) {
+            GetExpr getter = (GetExpr) expr.target;
+            compile(getter.object);
+            token(getter.property);
+            method.invoke(INVOKESTATIC, RUNTIME, "instance",
+                "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + INSTANCE + ";");
+            object = method.newLocal(1);
+            method.local(ASTORE, object);
+            constant(getter.cache, CACHE);
+            method.local(ALOAD, object);
+            method.invoke(INVOKEVIRTUAL, CACHE, "get", "(L" + OBJECT + ";)L" + OBJECT + ";");
+        }
+        else {
+            ListGetExpr getter = (ListGetExpr) expr.target;
+            compile(getter.object);
+            token(getter.bracket);
+            method.invoke(INVOKESTATIC, RUNTIME, "list",
+                "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + LIST_INSTANCE + ";");
+            object = method.newLocal(1);
+            method.local(ASTORE, object);
+            compile(getter.index);
+            index = method.newLocal(1);
+            method.local(ASTORE, index);
+            method.local(ALOAD, object);
+            method.local(ALOAD, index);
+            token(getter.bracket);
+            method.invoke(INVOKEVIRTUAL, LIST_INSTANCE, "get", "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+        }
+        int left = method.newLocal(1), right = method.newLocal(1);
+        method.local(ASTORE, left);
+        compile(expr.value);
+        method.local(ASTORE, right);
+
+        Label slow = new Label(), end = new Label();
+        if ((isLong(expr.kind) || isDouble(expr.kind)) && !isComparison(expr.kind)) {
+            guard(expr.kind, left, right, slow);
+            arithmetic(expr.kind, slow);
+            method.jump(GOTO, end);
+        }
+        method.bind(slow);
+        constant(expr, "com/interpreters/merlin/Expr$CompoundExpr");
+        method.local(ALOAD, left);
+        method.local(ALOAD, right);
+        method.local(ALOAD, 0);
+        method.invoke(INVOKESTATIC, RUNTIME, "compound",
+            "(Lcom/interpreters/merlin/Expr$CompoundExpr;L" + OBJECT + ";L" + OBJECT + ";L" + CODE + ";)L" + OBJECT + ";");
+        method.bind(end);
+
+        method.op(DUP);
+        if (expr.target instanceof VariableExpr) {
+            store((VariableExpr) expr.target);
+        }
+        else if (expr.target instanceof GetExpr) {
+            method.local(ASTORE, right);
+            method.local(ALOAD, object);
+            constant(expr.cache, CACHE);
+            method.local(ALOAD, right);
+            method.invoke(INVOKEVIRTUAL, INSTANCE, "set", "(L" + CACHE + ";L" + OBJECT + ";)V");
+        }
+        else {
+            method.local(ASTORE, right);
+            method.local(ALOAD, object);
+            method.local(ALOAD, index);
+            method.local(ALOAD, right);
+            token(((ListGetExpr) expr.target).bracket);
+            method.invoke(INVOKEVIRTUAL, LIST_INSTANCE, "set",
+                "(L" + OBJECT + ";L" + OBJECT + ";Lcom/interpreters/merlin/Token;)V");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicExpr(LogicExpr expr) {
+        Label end = new Label();
+        compile(expr.left);
+        method.op(DUP);
+        method.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(L" + OBJECT + ";)Z");
+        method.jump(expr.operation.type == TokenType.OR ? IFNE : IFEQ, end);
+        method.op(POP);
+        compile(expr.right);
+        method.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(TernaryExpr expr) {
+        Label otherwise = new Label(), end = new Label();
+        branch(expr.condition, false, otherwise);
+        compile(expr.left);
+        method.jump(GOTO, end);
+        method.bind(otherwise);
+        compile(expr.right);
+        method.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        boolean tailCall = tail;
+        tail = false;
+        if (expr.callee instanceof GetExpr) {
+            invoke(expr, (GetExpr) expr.callee, tailCall);
+            return null;
+        }
+
+        compile(expr.callee);
+        constant(expr, CALL);
+        method.invoke(INVOKESTATIC, RUNTIME, "callable", "(L" + OBJECT + ";L" + CALL + ";)L" + CALLABLE + ";");
+        if (tailCall) {
+            method.op(ACONST_NULL);
+            method.local(ALOAD, INTERPRETER_LOCAL);
+            newArray(expr.arguments);
+            token(expr.paren);
+            method.invoke(INVOKESTATIC, RUNTIME, "tailInvoke", "(L" + CALLABLE + ";L" + OBJECT + ";L" + INTERPRETER
+                + ";" + ARRAY + "Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+            return null;
+        }
+        method.local(ALOAD, INTERPRETER_LOCAL);
+        int count = expr.arguments.size();
+        if (count > 3) {
+            newArray(expr.arguments);
+            token(expr.paren);
+            method.invoke(INVOKEINTERFACE, CALLABLE, "call",
+                "(L" + INTERPRETER + ";" + ARRAY + "Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+            return null;
+        }
+        /// the entry point for the number of arguments
+        for (Expr argument : expr.arguments) compile(argument);
+        token(expr.paren);
+        method.invoke(INVOKEINTERFACE, CALLABLE, "call" + count,
+            "(L" + INTERPRETER + ";" + ("L" + OBJECT + ";").repeat(count) + "Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+        return null;
+    }
+
+    /// 'object.property(...)', a method is called with the object as its receiver instead of being bound
+    private void invoke(CallExpr expr, GetExpr getter, boolean tailCall) {
+        int receiver = method.newLocal(1);
+        constant(getter.cache, CACHE);
+        compile(getter.object);
+        method.op(DUP);
+        method.local(ASTORE, receiver);
+        method.invoke(INVOKEVIRTUAL, CACHE, "callee", "(L" + OBJECT + ";)L" + OBJECT + ";");
+        constant(expr, CALL);
+        method.invoke(INVOKESTATIC, RUNTIME, "callable", "(L" + OBJECT + ";L" + CALL + ";)L" + CALLABLE + ";");
+        method.local(ALOAD, receiver);
+        method.local(ALOAD, INTERPRETER_LOCAL);
+        newArray(expr.arguments);
+        token(expr.paren);
+        method.invoke(INVOKESTATIC, RUNTIME, tailCall ? "tailInvoke" : "invoke", "(L" + CALLABLE + ";L" + OBJECT + ";L" + INTERPRETER
+            + ";" + ARRAY + "Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+    }
+
+    private void newArray(List<Expr> elements) {
+        method.iconst(elements.size());
+        method.type(ANEWARRAY, OBJECT);
+        for (int i = 0; i < elements.size(); ++i) {
+            method.op(DUP);
+            method.iconst(i);
+            compile(elements.get(i));
+            method.op(AASTORE);
+        }
+    }
+
+    private void newList(List<Expr> elements) {
+        method.type(NEW, ARRAY_LIST);
+        method.op(DUP);
+        method.invoke(INVOKESPECIAL, ARRAY_LIST, "<init>", "()V");
+        for (Expr element : elements) {
+            method.op(DUP);
+            compile(element);
+            method.invoke(INVOKEVIRTUAL, ARRAY_LIST, "add", "(L" + OBJECT + ";)Z");
+            method.op(POP);
+        }
+    }
+
+    @Override
+    public Void visitFunctionExpr(FunctionExpr expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        constant(expr.cache, CACHE);
+        compile(expr.object);
+        method.invoke(INVOKEVIRTUAL, CACHE, "get", "(L" + OBJECT + ";)L" + OBJECT + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(SetExpr expr) {
+        compile(expr.object);
+        token(expr.property);
+        method.invoke(INVOKESTATIC, RUNTIME, "instance",
+            "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + INSTANCE + ";");
+        constant(expr.cache, CACHE);
+        compile(expr.value);
+        method.op(DUP_X2);
+        method.invoke(INVOKEVIRTUAL, INSTANCE, "set", "(L" + CACHE + ";L" + OBJECT + ";)V");
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(ThisExpr expr) {
+        load(expr.depth, expr.slot, expr.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(SuperExpr expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitSuperCallExpr(SuperCallExpr expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitListExpr(ListExpr expr) {
+        method.type(NEW, LIST_INSTANCE);
+        method.op(DUP);
+        newList(expr.elements);
+        method.invoke(INVOKESPECIAL, LIST_INSTANCE, "<init>", "(L" + LIST + ";)V");
+        return null;
+    }
+
+    @Override
+    public Void visitListComprExpr(ListComprExpr expr) {
+        pushFrame(1);
+        compile(expr.forComprehension.iterable);
+        token(expr.forComprehension.in);
+        method.invoke(INVOKESTATIC, RUNTIME, "comprehension",
+            "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + ITERATOR + ";");
+        int cursor = method.newLocal(1), list = method.newLocal(1);
+        method.local(ASTORE, cursor);
+        method.type(NEW, LIST_INSTANCE);
+        method.op(DUP);
+        method.invoke(INVOKESPECIAL, LIST_INSTANCE, "<init>", "()V");
+        method.local(ASTORE, list);
+
+        Label head = new Label(), end = new Label();
+        method.bind(head);
+        hasNext(cursor, end);
+        next(cursor);
+        store(expr.forComprehension.iter);
+        branch(expr.filter, false, head);
+        method.local(ALOAD, list);
+        compile(expr.expr);
+        method.invoke(INVOKEVIRTUAL, LIST_INSTANCE, "append", "(L" + OBJECT + ";)V");
+        method.jump(GOTO, head);
+        method.bind(end);
+
+        method.local(ALOAD, list);
+        popFrame();
+        return null;
+    }
+
+    @Override
+    public Void visitListGetExpr(ListGetExpr expr) {
+        compile(expr.object);
+        token(expr.bracket);
+        method.invoke(INVOKESTATIC, RUNTIME, "indexable",
+            "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+        compile(expr.index);
+        token(expr.bracket);
+        method.invoke(INVOKESTATIC, RUNTIME, "index",
+            "(L" + OBJECT + ";L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitSliceExpr(SliceExpr expr) {
+        compile(expr.object);
+        optional(expr.start);
+        optional(expr.end);
+        optional(expr.step);
+        token(expr.bracket);
+        method.invoke(INVOKESTATIC, INTERPRETER, "slice",
+            "(L" + OBJECT + ";L" + OBJECT + ";L" + OBJECT + ";L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + OBJECT + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitListSetExpr(ListSetExpr expr) {
+        compile(expr.getter.object);
+        token(expr.getter.bracket);
+        method.invoke(INVOKESTATIC, RUNTIME, "list",
+            "(L" + OBJECT + ";Lcom/interpreters/merlin/Token;)L" + LIST_INSTANCE + ";");
+        compile(expr.getter.index);
+        compile(expr.value);
+        method.op(DUP_X2);
+        token(expr.getter.bracket);
+        method.invoke(INVOKEVIRTUAL, LIST_INSTANCE, "set",
+            "(L" + OBJECT + ";L" + OBJECT + ";Lcom/interpreters/merlin/Token;)V");
+        return null;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.interpreters.merlin;
+
+import com.interpreters.merlin.Expr.BinaryExpr;
+import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
+import com.interpreters.merlin.Expr.UnaryExpr;
+
+import static com.interpreters.merlin.Specialization.*;
+
+/// Slow paths and checks called from JIT compiled code.
+final class JitRuntime {
+
+    private JitRuntime() {}
+
+    /// generic operation, a node whose guard failed is deoptimized like the interpreter does it
+    static Object binary(BinaryExpr expr, Object left, Object right, CompiledCode code) {
+        expr.kind = respecialize(expr.kind, expr.operation, left, right, code);
+        return Interpreter.binary(expr.operation, left, right);
+    }
+
+    static Object compound(CompoundExpr expr, Object left, Object right, CompiledCode code) {
+        expr.kind = respecialize(expr.kind, expr.operation, left, right, code);
+        return Interpreter.binary(expr.operation, left, right);
+    }
+
+    /// the kind of a binary node after these operands, a node seeing other operands than the
+    /// ones its code was compiled for turns generic and invalidates the code
+    private static int respecialize(int kind, Token operation, Object left, Object right, CompiledCode code) {
+        int seen = Specialization.binary(operation.type, left, right);
+        if (kind == UNINITIALIZED) return seen;
+        if (kind != GENERIC && kind != seen) {
+            code.invalidate();
+            return GENERIC;
+        }
+        return kind;
+    }
+
+    static Object unary(UnaryExpr expr, Object right, CompiledCode code) {
+        int kind = Specialization.unary(expr.operation.type, right);
+        if (expr.kind == UNINITIALIZED) expr.kind = kind;
+        else if (expr.kind != GENERIC && expr.kind != kind) {
+            expr.kind = GENERIC;
+            code.invalidate();
+        }
+        return Interpreter.unary(expr.operation, right);
+    }
+
+    static MerlinCallable callable(Object object, CallExpr call) {
+        if (!(object instanceof MerlinCallable)) {
+            throw new RuntimeError(call.paren,
+                "The call operator can only be used on function and class objects");
+        }
+
+        MerlinCallable callee = (MerlinCallable) object;
+        MerlinCallable.checkArity(call, callee);
+        return callee;
+    }
+
+    /// calls the callee of 'object.property(...)', a method gets the object as its receiver
+    static Object invoke(MerlinCallable callee, Object receiver, Interpreter interpreter, Object[] arguments, Token paren) {
+        if (callee instanceof MerlinFunction && ((MerlinFunction) callee).isUnboundMethod()) {
+            return ((MerlinFunction) callee).call(interpreter, receiver, arguments);
+        }
+        if (callee instanceof NativeMethod) return ((NativeMethod) callee).call(interpreter, receiver, arguments, paren);
+        return callee.call(interpreter, arguments, paren);
+    }
+
+    /// the call of a 'return' in tail position, a Merlin function is left to the caller's MerlinFunction.call
+    static Object tailInvoke(MerlinCallable callee, Object receiver, Interpreter interpreter, Object[] arguments, Token paren) {
+        if (callee instanceof MerlinFunction && !(callee instanceof VMFunction)) {
+            return interpreter.tailCall((MerlinFunction) callee, receiver, arguments);
+        }
+        return invoke(callee, receiver, interpreter, arguments, paren);
+    }
+
+    static MerlinInstance instance(Object object, Token property) {
+        if (object instanceof MerlinInstance) return (MerlinInstance) object;
+
+        throw new RuntimeError(property, "Only instances have properties.");
+    }
+
+    static MerlinListInstance list(Object object, Token bracket) {
+        if (object instanceof MerlinListInstance) return (MerlinListInstance) object;
+
+        throw new RuntimeError(bracket, "Can't take index from non-list object.");
+    }
+
+    static Object indexable(Object object, Token bracket) {
+        if (Interpreter.indexable(object)) return object;
+
+        throw new RuntimeError(bracket, "Can't take index from non-list object.");
+    }
+
+    static Object index(Object object, Object index, Token bracket) {
+        if (object instanceof MerlinListInstance) return ((MerlinListInstance) object).get(index, bracket);
+        return Interpreter.index(object, index, bracket);
+    }
+
+    static MerlinIterator iterator(Object object, Token in) {
+        if (object instanceof MerlinIterable) return ((MerlinIterable) object).iterator();
+
+        throw new RuntimeError(in, "Expression after 'in' must be iterable.");
+    }
+
+    static MerlinIterator comprehension(Object object, Token in) {
+        if (object instanceof MerlinIterable) return ((MerlinIterable) object).iterator();
+
+        throw new RuntimeError(in, "Expression after 'in' must be iterable in list comprehension.");
+    }
+
+    static Environment ancestor(Environment environment, int depth) {
+        for (int i = 0; i < depth; ++i) environment = environment.enclosing;
+        return environment;
+    }
+
+}
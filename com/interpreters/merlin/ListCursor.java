@@ -0,0 +1,24 @@
+package com.interpreters.merlin;
+
+/// Cursor of a list instance. It reads the instance's current list on every step, so it
+/// follows a lazy range into the real list it becomes and sees elements added by the loop.
+public final class ListCursor implements MerlinIterator {
+
+    private final MerlinListInstance instance;
+    private int index = 0;
+
+    public ListCursor(MerlinListInstance instance) {
+        this.instance = instance;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < instance.getList().size();
+    }
+
+    @Override
+    public Object next() {
+        return instance.getList().get(index++);
+    }
+
+}
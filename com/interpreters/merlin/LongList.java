@@ -0,0 +1,104 @@
+package com.interpreters.merlin;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/// Elements of a list that only holds integers, unboxed in a growable array. MerlinListInstance
+/// only ever stores integers here, it switches to a generic list before anything else goes in.
+final class LongList extends AbstractList<Object> implements RandomAccess {
+
+    private long[] values;
+    private int size;
+
+    LongList() {
+        this(new long[8], 0);
+    }
+
+    private LongList(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /// the elements as a LongList, null if one of them isn't an integer
+    static LongList of(List<Object> elements) {
+        long[] values = new long[elements.size()];
+        for (int i = 0; i < values.length; ++i) {
+            Object element = elements.get(i);
+            if (!(element instanceof Long)) return null;
+            values[i] = (long) element;
+        }
+        return new LongList(values, values.length);
+    }
+
+    LongList concat(LongList other) {
+        long[] result = Arrays.copyOf(values, size + other.size);
+        System.arraycopy(other.values, 0, result, size, other.size);
+        return new LongList(result, result.length);
+    }
+
+    /// the elements at start, start + step, ... in an array of their own
+    LongList copy(int start, int step, int size) {
+        long[] result = new long[size];
+        for (int i = 0; i < size; ++i) result[i] = values[start + i * step];
+        return new LongList(result, size);
+    }
+
+    long getLong(int index) {
+        return values[index];
+    }
+
+    void setLong(int index, long value) {
+        values[index] = value;
+    }
+
+    void add(long value) {
+        if (size == values.length) values = Arrays.copyOf(values, Math.max(8, size * 2));
+        values[size++] = value;
+    }
+
+    void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    int indexOf(long value) {
+        for (int i = 0; i < size; ++i) if (values[i] == value) return i;
+        return -1;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return Interpreter.box(values[index]);
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        long previous = values[index];
+        values[index] = (long) element;
+        return Interpreter.box(previous);
+    }
+
+    @Override
+    public boolean add(Object element) {
+        add((long) element);
+        return true;
+    }
+
+    @Override
+    public Object remove(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        long previous = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        --size;
+        return Interpreter.box(previous);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+}
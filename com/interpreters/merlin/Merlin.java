@@ -27,14 +27,40 @@ public class Merlin {
     private static boolean hadError = false;
     private static boolean hadRuntimeError = false;
 
+    /// --engine=vm compiles programs to bytecode instead of walking the AST
+    private static boolean useVM = false;
+    /// --stats reports the inline cache counters on stderr once the script is done
+    private static boolean showStats = false;
+
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: merlin [script]");
-            System.exit(64);
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); ++first) {
+            String option = args[first];
+            if (option.startsWith("--engine=")) {
+                String engine = option.substring("--engine=".length());
+                if (engine.equals("vm")) useVM = true;
+                else if (!engine.equals("tree")) usage();
+            }
+            /// --jit=on compiles hot functions, --jit=eager on the second call, --jit=off is the default
+            else if (option.startsWith("--jit=")) {
+                String mode = option.substring("--jit=".length());
+                if (!mode.equals("on") && !mode.equals("off") && !mode.equals("eager")) usage();
+                Jit.configure(mode);
+            }
+            else if (option.equals("--stats")) showStats = true;
+            else usage();
         }
-        if (args.length == 1) runFile(args[0]);
+
+        if (args.length - first > 1) usage();
+        if (args.length - first == 1) runFile(args[first]);
         else runPrompt();
+        if (showStats) System.err.println(InlineCache.statistics());
+    }
+
+    private static void usage() {
+        System.out.println("Usage: merlin [--engine=tree|vm] [--jit=on|off|eager] [--stats] [script]");
+        System.exit(64);
     }
 
     private static void runFile(String path) throws IOException {
@@ -74,7 +100,7 @@ public class Merlin {
 
         boolean showWarnings = interpreter.isMain(); ///interpreter.isMain();
         Resolver resolver = new Resolver(showWarnings);
-        interpreter.setDistance(resolver.resolveStatements(statements));
+        resolver.resolveStatements(statements);
 
         if (hadError) {
             if (interpreter.isMain()) return null;
@@ -82,7 +108,9 @@ public class Merlin {
         }
 
         //System.out.println(new Printer().print(expr));
+        new Optimizer().optimizeStatements(statements);
     
+        if (useVM) return interpreter.interpreteCompiled(Compiler.compile(statements));
         return interpreter.interpreteAll(statements);
     }
 
@@ -1,8 +1,57 @@
 package com.interpreters.merlin;
 
+import java.util.Arrays;
 import java.util.List;
 
+/// A call site with up to three arguments uses the fixed-arity entry point for its count and
+/// longer ones pass an array. By default those end up in the list form, so a callable only
+/// overrides the forms it can serve without building a list.
 public interface MerlinCallable {
     public int arity();
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren);
+
+    default Object call(Interpreter interpreter, Object[] arguments, Token paren) {
+        return call(interpreter, Arrays.asList(arguments), paren);
+    }
+
+    default Object call0(Interpreter interpreter, Token paren) {
+        return call(interpreter, MerlinFunction.NO_ARGUMENTS, paren);
+    }
+
+    default Object call1(Interpreter interpreter, Object first, Token paren) {
+        return call(interpreter, new Object[] {first}, paren);
+    }
+
+    default Object call2(Interpreter interpreter, Object first, Object second, Token paren) {
+        return call(interpreter, new Object[] {first, second}, paren);
+    }
+
+    default Object call3(Interpreter interpreter, Object first, Object second, Object third, Token paren) {
+        return call(interpreter, new Object[] {first, second, third}, paren);
+    }
+
+    /// the check of a call site, which remembers the last callee that passed it: a call site
+    /// mostly calls the same function, and its arity never changes
+    static void checkArity(Expr.CallExpr call, MerlinCallable callee) {
+        if (call.checked == callee) return;
+        checkArity(callee, call.arguments.size(), call.paren);
+        call.checked = callee;
+    }
+
+    /// the check of a call site passing 'count' arguments; a negative arity is the maximum
+    /// of a callable with optional arguments, -256 takes any number
+    static void checkArity(MerlinCallable callee, int count, Token paren) {
+        int arity = callee.arity();
+        if (arity == count || arity == -256) return;
+        if (arity < 0) {
+            if (count > -arity) {
+                throw new RuntimeError(paren,
+                    "Expected no more than " + (-arity) +" arguments but got " + count + ".");
+            }
+        }
+        else {
+            throw new RuntimeError(paren,
+                "Expected " + arity + " arguments but got " + count + ".");
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.interpreters.merlin;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -9,14 +10,29 @@ public class MerlinClass implements MerlinCallable {
     private final MerlinClass superclass;
     private final Map<String, MerlinFunction> methods;
     private final MerlinFunction constructor;
+    /// methods of a built-in class, one table shared by all its instances
+    private final Map<String, NativeMethod> natives;
     private final int _arity;
+    /// shape of a new instance, and how many fields the instances of this class grew to so far
+    final Shape root = new Shape(this);
+    private int fieldCount = 0;
     
 
     public MerlinClass(String name, MerlinClass superclass, Map<String, MerlinFunction> methods, MerlinFunction constructor) {
+        this(name, superclass, methods, constructor, Collections.emptyMap());
+    }
+
+    public MerlinClass(String name, Map<String, NativeMethod> natives) {
+        this(name, null, Collections.emptyMap(), null, natives);
+    }
+
+    private MerlinClass(String name, MerlinClass superclass, Map<String, MerlinFunction> methods,
+            MerlinFunction constructor, Map<String, NativeMethod> natives) {
         this.name = name;
         this.superclass = superclass;
         this.methods = methods;
         this.constructor = constructor;
+        this.natives = natives;
         this._arity = constructor != null ? constructor.arity() : 0;
     }
 
@@ -27,11 +43,25 @@ public class MerlinClass implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        MerlinInstance instance =  new MerlinInstance(this);
-        if (constructor != null) constructor.bind("this", instance).call(interpreter, arguments, paren);
+        return call(interpreter, arguments.toArray(), paren);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments, Token paren) {
+        MerlinInstance instance =  new MerlinInstance(this, fieldCount);
+        if (constructor != null) constructor.call(interpreter, instance, arguments);
         return instance;
     }
 
+    /// new instances allocate room for the fields earlier instances ended up with
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    void fieldsSeen(int count) {
+        if (count > fieldCount) fieldCount = count;
+    }
+
     public MerlinFunction findMethod(Token name) {
         if (methods.containsKey(name.lexeme)) return methods.get(name.lexeme);
         if (superclass != null) return superclass.findMethod(name);
@@ -39,6 +69,10 @@ public class MerlinClass implements MerlinCallable {
         return null;
     }
 
+    public NativeMethod findNative(Token name) {
+        return natives.get(name.lexeme);
+    }
+
     @Override
     public String toString() {
         return "<class '" + name + "'>";
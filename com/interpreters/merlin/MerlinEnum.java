@@ -7,9 +7,9 @@ public class MerlinEnum extends MerlinInstance {
 
     public MerlinEnum(List<Token> consts) {
         super(new MerlinClass("Enum", null, new HashMap<>(), null));
-        int i = 0;
+        long i = 0;
         for (Token const_ : consts) {
-            set(const_.lexeme, i++);
+            set(const_.lexeme, Interpreter.box(i++));
         }
     }
 
@@ -6,14 +6,23 @@ import com.interpreters.merlin.Expr.FunctionExpr;
 
 public class MerlinFunction implements MerlinCallable {
 
+    static final Object[] NO_ARGUMENTS = {};
+
     private final String name;
     private final Expr.FunctionExpr description;
     private final Environment closure;
+    /// 'this' of a bound method, null for functions and for the methods stored in a class
+    private final Object receiver;
 
     public MerlinFunction(String name, FunctionExpr description, Environment closure) {
+        this(name, description, closure, null);
+    }
+
+    private MerlinFunction(String name, FunctionExpr description, Environment closure, Object receiver) {
         this.name = name;
         this.description = description;
         this.closure = closure;
+        this.receiver = receiver;
     }
 
     @Override
@@ -23,25 +32,69 @@ public class MerlinFunction implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        Environment environment = new Environment(closure);
-        for (int i = 0; i < arguments.size(); ++i) {
-            environment.define(description.parameters.get(i).lexeme, arguments.get(i));
-        }
+        return call(interpreter, arguments.toArray(), paren);
+    }
 
-        try {
-            interpreter.executeBlock(description.body, environment);
-            return null;
-        }
-        catch(Return ret) {
-            return ret.value;
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments, Token paren) {
+        return call(interpreter, receiver, arguments);
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter, Token paren) {
+        return call(interpreter, NO_ARGUMENTS, paren);
+    }
+
+    /// calls a method on the given receiver without binding it first; a call the body returns
+    /// right away runs here as the next iteration, so tail calls don't grow the stack
+    public Object call(Interpreter interpreter, Object receiver, Object[] arguments) {
+        MerlinFunction function = this;
+        Environment environment = null;
+        while (true) {
+            FunctionExpr description = function.description;
+            CompiledCode compiled = description.compiled;
+            if (compiled != null || (compiled = Jit.invoked(description)) != null) {
+                Object result = compiled.run(interpreter, function.closure, arguments, receiver);
+                if (result != Interpreter.TAIL_CALL) return result;
+            }
+            else {
+                /// the frame of the previous iteration is reused for the same function, unless
+                /// a nested function or a generator may have kept it
+                if (environment == null || description.captures || description.generator
+                        || environment.enclosing != function.closure) {
+                    environment = new Environment(function.closure, description.size);
+                }
+                for (int i = 0; i < arguments.length; ++i) {
+                    environment.define(i, arguments[i]);
+                }
+                if (description.method) environment.define(arguments.length, receiver);
+                if (description.generator) {
+                    return new InterpretedGenerator(function.name, description, interpreter, environment);
+                }
+
+                Object completion = interpreter.executeBlock(description.body, environment);
+                if (completion == null) return null;
+                if (completion == Interpreter.RETURNED) return interpreter.returned();
+            }
+
+            MerlinFunction next = interpreter.tailCallee;
+            receiver = next.isUnboundMethod() ? interpreter.tailReceiver : next.receiver;
+            arguments = interpreter.tailArguments;
+            interpreter.tailCallee = null;
+            interpreter.tailReceiver = null;
+            interpreter.tailArguments = null;
+            if (next.description != description) environment = null;
+            function = next;
         }
     }
 
+    /// a method looked up for a call site that passes the receiver itself
+    public boolean isUnboundMethod() {
+        return receiver == null && description.method;
+    }
+
     public MerlinFunction bind(String name, Object value) {
-        Environment environment = new Environment(closure);
-        environment.define(name, value);
-        MerlinFunction function = new MerlinFunction(name, description, environment);
-        return function;
+        return new MerlinFunction(name, description, closure, value);
     }
 
     @Override
@@ -0,0 +1,73 @@
+package com.interpreters.merlin;
+
+import java.util.NoSuchElementException;
+
+/// The value of a call to a function with 'yield' in its body. It is its own single cursor:
+/// each element is computed by running the body up to its next 'yield' when it's asked for,
+/// so a chain of generators holds one element at a time. How the body is suspended depends
+/// on the engine that runs it.
+public abstract class MerlinGenerator implements MerlinIterable, MerlinIterator {
+
+    /// returned by advance() when the body has completed
+    static final Object COMPLETED = new Object();
+
+    private final String name;
+    private final Token paren;
+    private Object value = null;
+    private boolean ready = false;
+    private boolean done = false;
+    private boolean running = false;
+
+    MerlinGenerator(String name, Token paren) {
+        this.name = name;
+        this.paren = paren;
+    }
+
+    /// runs the body up to its next 'yield' and returns the yielded value, or COMPLETED
+    abstract Object advance();
+
+    @Override
+    public MerlinIterator iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready || done) return ready;
+        if (running) throw new RuntimeError(paren, "Generator is already running.");
+
+        running = true;
+        try {
+            Object next = advance();
+            if (next == COMPLETED) done = true;
+            else {
+                value = next;
+                ready = true;
+            }
+        }
+        catch (RuntimeException error) {
+            done = true;
+            throw error;
+        }
+        finally {
+            running = false;
+        }
+        return ready;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Object next = value;
+        value = null;
+        ready = false;
+        return next;
+    }
+
+    @Override
+    public String toString() {
+        if (name != null) return "<generator '" + name + "'>";
+        return "<anonymus generator>";
+    }
+
+}
@@ -1,28 +1,56 @@
 package com.interpreters.merlin;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class MerlinInstance {
+    private static final Object[] NO_FIELDS = {};
+
     private final MerlinClass description;
-    private final Map<String, Object> properties = new HashMap<>();
+    /// the fields live in 'values' at the slots 'shape' assigns them
+    Shape shape;
+    Object[] values;
     
+    /// the built-in types share one class per type, so their instances start without room for
+    /// fields and only allocate it when a field is first set on them
     public MerlinInstance(MerlinClass description) {
+        this(description, 0);
+    }
+
+    /// an instance of a script class, with room for the fields earlier instances grew to
+    MerlinInstance(MerlinClass description, int fields) {
         this.description = description;
+        this.shape = description.root;
+        this.values = fields > 0 ? new Object[fields] : NO_FIELDS;
     }
 
 
     public Object get(Token property) {
-        if (properties.containsKey(property.lexeme)) return properties.get(property.lexeme);
+        int slot = shape.slot(property.lexeme);
+        if (slot >= 0) return values[slot];
 
         MerlinFunction method = description.findMethod(property);
         if (method != null) return method.bind("this", this);
+        NativeMethod nativeMethod = description.findNative(property);
+        if (nativeMethod != null) return nativeMethod.read(this);
 
         throw new RuntimeError(property, "Undefined property '" + property.lexeme + "'.");
     }
 
     public void set(String property, Object value) {
-        properties.put(property, value);
+        int slot = shape.slot(property);
+        if (slot >= 0) values[slot] = value;
+        else store(shape.with(property), value);
+    }
+
+    void set(InlineCache cache, Object value) {
+        cache.set(this, value);
+    }
+
+    /// adds the last field of the given shape, which must be a transition of the current one
+    void store(Shape next, Object value) {
+        if (next.size > values.length) values = Arrays.copyOf(values, Math.max(next.size, values.length * 2));
+        shape = next;
+        values[next.size - 1] = value;
     }
 
     @Override
@@ -1,7 +1,7 @@
 package com.interpreters.merlin;
 
+/// Every walk over the elements takes its own cursor, so nested loops over the same
+/// collection, or an error in the middle of one, leave no state behind.
 public interface MerlinIterable {
-    public Object next();
-    public boolean isAtEnd();
-    public void reset();
+    public MerlinIterator iterator();
 }
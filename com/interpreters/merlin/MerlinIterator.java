@@ -0,0 +1,6 @@
+package com.interpreters.merlin;
+
+public interface MerlinIterator {
+    public boolean hasNext();
+    public Object next();
+}
@@ -2,19 +2,48 @@ package com.interpreters.merlin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MerlinListInstance extends MerlinInstance implements MerlinIterable, MerlinLenable {
 
-    private final List<Object> list;
-    private int current;
+    /// all list instances share one class and its table of methods, a list itself only holds
+    /// its elements
+    private static final Map<String, NativeMethod> METHODS = new HashMap<>();
+    private static final MerlinClass CLASS = new MerlinClass("List", METHODS);
+
+    static {
+        method(new get());
+        method(new set());
+        method(new add());
+        method(new isEmpty());
+        method(new size());
+        method(new pop());
+        method(new sort());
+        method(new reverse());
+        method(new indexOf());
+        method(new bisect());
+        method(new binarySearch());
+        method(new extend());
+    }
+
+    private static void method(NativeMethod method) {
+        METHODS.put(method.name, method);
+    }
+
+    /// the elements live in one of several storages: a RangeList or a SliceList until the
+    /// first change, a DoubleList or a LongList while they are all numbers of one type, and
+    /// a generic list from the first element that doesn't fit
+    private List<Object> list;
+    /// set once a slice reads the storage, which then isn't changed in place any more
+    private boolean shared = false;
 
     public MerlinListInstance(List<Object> list) {
-        super(new MerlinClass("List", null, new HashMap<>(), null));
-        this.list = list;
-        this.current = 0;
-        initListMethods();
+        super(CLASS);
+        this.list = specialize(list);
     }
 
     public MerlinListInstance() {
@@ -25,37 +54,218 @@ public class MerlinListInstance extends MerlinInstance implements MerlinIterable
         return list.size();
     }
 
+    /// 'list[index]' and get(index): an integer index in range reads the storage directly,
+    /// everything else goes through the checks and conversions below
     public Object get(Object index, Token bracket) {
-        Token getToken = new Token(TokenType.IDENTIFIER, "get", null, 
-            bracket.line, bracket.position, bracket.file);
+        if (index instanceof Long) {
+            long i = (long) index;
+            int size = list.size();
+            if (i < 0) i += size;
+            if (i >= 0 && i < size) return list.get((int) i);
+        }
+        if (Interpreter.isInteger(index)) return getIndex(Interpreter.toInt(index), bracket);
+        if (index instanceof MerlinListInstance) return getList((MerlinListInstance) index, bracket);
+        if (index instanceof Double) throw new RuntimeError(bracket, "Index must be an integer.");
 
-        return ((MerlinCallable)get(getToken)).call(null, Arrays.asList(index), bracket);
+        throw new RuntimeError(bracket, "Index must be an integer or List.");
     }
 
     public void set(Object index, Object value, Token bracket) {
-        Token setToken = new Token(TokenType.IDENTIFIER, "set", null, 
-            bracket.line, bracket.position, bracket.file);
-        
-        ((MerlinCallable)get(setToken)).call(null, Arrays.asList(index, value), bracket);
+        if (index instanceof Long) {
+            long i = (long) index;
+            int size = list.size();
+            if (i < 0) i += size;
+            if (i >= 0 && i < size) {
+                store((int) i, value);
+                return;
+            }
+        }
+        if (Interpreter.isInteger(index)) setIndex(Interpreter.toInt(index), value, bracket);
+        else if (index instanceof MerlinListInstance) setList((MerlinListInstance) index, value, bracket);
+        else throw new RuntimeError(bracket, "Index must be an integer.");
     }
 
-
     @Override
-    public Object next() {
-        return list.get(current++);
+    public MerlinIterator iterator() {
+        return new ListCursor(this);
     }
 
-    @Override
-    public boolean isAtEnd() {
-        return current == list.size();
+    public List<Object> getList() {return list;}
+
+    /// adds an element at the end, the storage changes if the element doesn't fit it
+    public void append(Object value) {
+        storage(value).add(value);
     }
 
-    @Override
-    public void reset() {
-        current = 0;
+    /// 'list[start:end:step]', a view of the elements that shares their storage
+    public MerlinListInstance slice(Slice slice) {
+        if (list instanceof RangeList) return new MerlinListInstance(((RangeList) list).slice(slice));
+        if (list instanceof SliceList) return new MerlinListInstance(((SliceList) list).slice(slice));
+        shared = true;
+        return new MerlinListInstance(new SliceList(list, slice));
     }
 
-    public List<Object> getList() {return list;}
+    public MerlinListInstance concat(MerlinListInstance other) {
+        if (list instanceof DoubleList && other.list instanceof DoubleList) {
+            return new MerlinListInstance(((DoubleList) list).concat((DoubleList) other.list));
+        }
+        if (list instanceof LongList && other.list instanceof LongList) {
+            return new MerlinListInstance(((LongList) list).concat((LongList) other.list));
+        }
+        List<Object> result = new ArrayList<>(list.size() + other.list.size());
+        result.addAll(list);
+        result.addAll(other.list);
+        return new MerlinListInstance(result);
+    }
+
+    /// sorts the list in place, equal elements keep their order. Without a function numbers and
+    /// strings are compared as '<' does, in the unboxed array for numbers of one type; a
+    /// function of one argument gives the keys to sort by, one of two arguments is the '<'.
+    public void sort(Interpreter interpreter, MerlinCallable order, Token paren) {
+        if (order == null) {
+            List<Object> list = mutable();
+            if (list instanceof DoubleList) {
+                ((DoubleList) list).sort();
+                return;
+            }
+            if (list instanceof LongList) {
+                ((LongList) list).sort();
+                return;
+            }
+        }
+
+        Object[] elements = list.toArray();
+        try {
+            if (order == null) Arrays.sort(elements, new Natural(paren));
+            else if (order.arity() == 1) elements = sortByKey(interpreter, elements, order, paren);
+            else if (order.arity() == 2) Arrays.sort(elements, new Less(interpreter, order, paren));
+            else throw new RuntimeError(paren, "Sort takes a key function of one argument or a comparator of two.");
+        }
+        catch (IllegalArgumentException inconsistent) {
+            throw new RuntimeError(paren, "Comparator gives an inconsistent order.");
+        }
+        list = specialize(new ArrayList<>(Arrays.asList(elements)));
+        shared = false;
+    }
+
+    private static Object[] sortByKey(Interpreter interpreter, Object[] elements, MerlinCallable key, Token paren) {
+        final Object[] keys = new Object[elements.length];
+        Integer[] order = new Integer[elements.length];
+        for (int i = 0; i < elements.length; ++i) {
+            keys[i] = key.call1(interpreter, elements[i], paren);
+            order[i] = i;
+        }
+        final Natural natural = new Natural(paren);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer left, Integer right) {
+                return natural.compare(keys[left], keys[right]);
+            }
+        });
+        Object[] sorted = new Object[elements.length];
+        for (int i = 0; i < sorted.length; ++i) sorted[i] = elements[order[i]];
+        return sorted;
+    }
+
+    /// reverses the list in place
+    public void reverse() {
+        Collections.reverse(mutable());
+    }
+
+    /// the index of the first element '==' to the value, -1 if there is none
+    public int indexOf(Object value) {
+        List<Object> list = this.list;
+        if (list instanceof DoubleList && value instanceof Double) return ((DoubleList) list).indexOf((double) value);
+        if (list instanceof LongList && value instanceof Long) return ((LongList) list).indexOf((long) value);
+        if (list instanceof RangeList && value instanceof Long) return list.indexOf(value);
+        for (int i = 0; i < list.size(); ++i) {
+            if (Interpreter.equals(list.get(i), value)) return i;
+        }
+        return -1;
+    }
+
+    /// the index to insert the value at to keep a sorted list sorted, after the elements equal
+    /// to it
+    public int bisect(Object value, Token paren) {
+        Natural natural = new Natural(paren);
+        int low = 0, high = list.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (natural.compare(value, list.get(middle)) < 0) high = middle;
+            else low = middle + 1;
+        }
+        return low;
+    }
+
+    /// the index of an element equal to the value in a sorted list, -1 if there is none
+    public int binarySearch(Object value, Token paren) {
+        Natural natural = new Natural(paren);
+        int low = 0, high = list.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = natural.compare(list.get(middle), value);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /// adds every element of the iterable at the end; a list adds the elements it has when the
+    /// call starts, so a list extended with itself doubles
+    public void extend(MerlinIterable iterable) {
+        if (iterable instanceof MerlinListInstance) {
+            List<Object> elements = ((MerlinListInstance) iterable).list;
+            for (int i = 0, size = elements.size(); i < size; ++i) append(elements.get(i));
+            return;
+        }
+        MerlinIterator cursor = iterable.iterator();
+        while (cursor.hasNext()) append(cursor.next());
+    }
+
+    /// a new generic list of numbers of one type is stored unboxed instead
+    private static List<Object> specialize(List<Object> elements) {
+        if (!(elements instanceof ArrayList) || elements.isEmpty()) return elements;
+        Object first = elements.get(0);
+        List<Object> specialized = null;
+        if (first instanceof Double) specialized = DoubleList.of(elements);
+        else if (first instanceof Long) specialized = LongList.of(elements);
+        return specialized != null ? specialized : elements;
+    }
+
+    /// the list to change: a lazy range or slice is copied into a real list first, and so is
+    /// a storage that slices still read
+    private List<Object> mutable() {
+        if (list instanceof RangeList) list = LongList.of(list);
+        else if (list instanceof SliceList) list = specialize(((SliceList) list).copy());
+        else if (shared) {
+            if (list instanceof DoubleList) list = ((DoubleList) list).copy(0, 1, list.size());
+            else if (list instanceof LongList) list = ((LongList) list).copy(0, 1, list.size());
+            else list = new ArrayList<>(list);
+            shared = false;
+        }
+        return list;
+    }
+
+    /// the list to store the value in: an empty generic list takes the storage for the value's
+    /// type, and a number storage is copied into a generic list for a value it can't hold
+    private List<Object> storage(Object value) {
+        List<Object> list = mutable();
+        if (list instanceof DoubleList) {
+            if (value instanceof Double) return list;
+        }
+        else if (list instanceof LongList) {
+            if (value instanceof Long) return list;
+        }
+        else {
+            if (list.isEmpty() && list instanceof ArrayList) {
+                if (value instanceof Double) return this.list = new DoubleList();
+                if (value instanceof Long) return this.list = new LongList();
+            }
+            return list;
+        }
+        return this.list = new ArrayList<>(list);
+    }
 
     @Override
     public String toString() {
@@ -67,233 +277,288 @@ public class MerlinListInstance extends MerlinInstance implements MerlinIterable
         return result + "]";
     }
 
-    private void initListMethods() {
-        set("get", new get(this));
-        set("set", new set(this));
-        set("add", new add(this));
-        set("isEmpty", new isEmpty(this));
-        set("size", new size(this));
-        set("pop", new pop(this));
-    }
-
     private int correctIndex(int index) {
         if (index >= 0 || list.size() == 0) return index;
         return (index + list.size()) % list.size();
     }
 
-    class get implements MerlinCallable {
-
-        private final MerlinListInstance instance;
-        private Token bracket;
+    private Object getIndex(int index, Token bracket) {
+        index = correctIndex(index);
+        if (index < 0 || index >= list.size()) throw new RuntimeError(bracket, "List index out of range.");
+        return list.get(index);
+    }
 
-        public get(MerlinListInstance instance) {
-            this.instance = instance;
+    private Object getList(MerlinListInstance indexes, Token bracket) {
+        List<Object> lst = new ArrayList<>();
+        int i = 0;
+        for (Object obj : indexes.list) {
+            if (!Interpreter.isInteger(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
+            lst.add(getIndex(Interpreter.toInt(obj), bracket));
+            i += 1;
         }
+        return new MerlinListInstance(lst);
+    }
 
-        @Override
-        public int arity() {
-            return 1;
-        }
+    private void setIndex(int index, Object value, Token bracket) {
+        index = correctIndex(index);
+        if (index < 0 || index >= list.size()) throw new RuntimeError(bracket, "List index out of range.");
+        store(index, value);
+    }
 
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token bracket) {
-            this.bracket = bracket;
-            Object index = arguments.get(0);
+    /// writes an element in range, a number that fits the primitive storage goes in unboxed
+    private void store(int index, Object value) {
+        List<Object> list = mutable();
+        if (list instanceof DoubleList && value instanceof Double) ((DoubleList) list).setDouble(index, (double) value);
+        else if (list instanceof LongList && value instanceof Long) ((LongList) list).setLong(index, (long) value);
+        else storage(value).set(index, value);
+    }
 
-            if (index instanceof Double) return getDouble((double) index);
-            if (index instanceof MerlinListInstance) return getList((MerlinListInstance) index);
+    private void setList(MerlinListInstance indexes, Object value, Token bracket) {
+        if (value instanceof MerlinListInstance) {
+            MerlinListInstance lst = (MerlinListInstance) value;
 
-            throw new RuntimeError(bracket, "Index must be an integer or List.");
-        }
+            if (indexes.size() != lst.size()) {
+                throw new RuntimeError(bracket, 
+                    "The sizes of index list " + indexes.size() + " and value list " + lst.size() + " must match.");
+            }
 
-        private Object getDouble(double n) {
-            if (n % 1 != 0) throw new RuntimeError(bracket, "Index must be an integer.");
-            int index = (int)n;
-            return getIndex(index);
-        }
-    
-        private Object getIndex(int index) {
-            index = correctIndex(index);
-            if (index < 0 || index >= instance.list.size()) throw new RuntimeError(bracket, "List index out of range.");
-            return instance.list.get(index);
+            int i = 0;
+            for (Object obj : indexes.list) {
+                if (!Interpreter.isInteger(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
+                setIndex(Interpreter.toInt(obj), lst.list.get(i), bracket);
+                i += 1;
+            }
         }
-    
-        private Object getList(MerlinListInstance indexes) {
-            List<Object> lst = new ArrayList<>();
+        else {
             int i = 0;
             for (Object obj : indexes.list) {
-                if (!checkInt(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
-                lst.add(getIndex((int)((double)obj)));
+                if (!Interpreter.isInteger(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
+                setIndex(Interpreter.toInt(obj), value, bracket);
                 i += 1;
             }
-            return new MerlinListInstance(lst);
         }
-    
-        private boolean checkInt(Object obj) {
-            if (!(obj instanceof Double)) return false;
-            double n = (double) obj;
-            if (n % 1 != 0) return false;
-            return true;
+    }
+
+    /// the order of '<' on numbers and strings, with NaN after every other number
+    private static final class Natural implements Comparator<Object> {
+
+        private final Token paren;
+
+        Natural(Token paren) {
+            this.paren = paren;
+        }
+
+        @Override
+        public int compare(Object left, Object right) {
+            if (left instanceof String && right instanceof String) return ((String) left).compareTo((String) right);
+            if (Interpreter.isNumber(left) && Interpreter.isNumber(right)) return Interpreter.compareNumbers(left, right);
+            throw new RuntimeError(paren, "Operands must be two numbers or two strings.");
         }
 
     }
 
-    class size implements MerlinCallable {
+    /// the order of a comparator written in Merlin, which tells if its first argument goes
+    /// before the second one
+    private static final class Less implements Comparator<Object> {
 
-        private final MerlinListInstance instance;
+        private final Interpreter interpreter;
+        private final MerlinCallable comparator;
+        private final Token paren;
 
-        public size(MerlinListInstance instance) {
-            this.instance = instance;
+        Less(Interpreter interpreter, MerlinCallable comparator, Token paren) {
+            this.interpreter = interpreter;
+            this.comparator = comparator;
+            this.paren = paren;
         }
 
         @Override
-        public int arity() {
-            return 0;
+        public int compare(Object left, Object right) {
+            if (less(left, right)) return -1;
+            return less(right, left) ? 1 : 0;
         }
 
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            return instance.list.size() * 1.0;
+        private boolean less(Object left, Object right) {
+            Object result = comparator.call2(interpreter, left, right, paren);
+            if (!(result instanceof Boolean)) throw new RuntimeError(paren, "Comparator must return 'boolean'.");
+            return (boolean) result;
         }
 
     }
 
-    class isEmpty implements MerlinCallable {
+    /// the methods get the list they are called on as the receiver
 
-        private final MerlinListInstance instance;
+    static class get extends NativeMethod {
 
-        public isEmpty(MerlinListInstance instance) {
-            this.instance = instance;
+        get() {
+            super("get", 1);
         }
 
         @Override
-        public int arity() {
-            return 0;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token bracket) {
+            return ((MerlinListInstance) receiver).get(arguments[0], bracket);
+        }
+
+    }
+
+    static class size extends NativeMethod {
+
+        size() {
+            super("size", 0);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            return instance.list.isEmpty();
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return Interpreter.box(((MerlinListInstance) receiver).list.size());
         }
 
     }
 
-    class set implements MerlinCallable {
+    static class isEmpty extends NativeMethod {
 
-        private final MerlinListInstance instance;
-        private Token bracket;
-
-        public set(MerlinListInstance instance) {
-            this.instance = instance;
+        isEmpty() {
+            super("isEmpty", 0);
         }
 
         @Override
-        public int arity() {
-            return 2;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return ((MerlinListInstance) receiver).list.isEmpty();
         }
 
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token bracket) {
-            this.bracket = bracket;
-            Object index = arguments.get(0), value = arguments.get(1);
+    }
+
+    static class set extends NativeMethod {
 
-            if (index instanceof Double) setDouble((double) index, value);
-            else if (index instanceof MerlinListInstance) setList((MerlinListInstance) index, value);
-            else throw new RuntimeError(bracket, "Index must be an integer.");
+        set() {
+            super("set", 2);
+        }
 
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token bracket) {
+            ((MerlinListInstance) receiver).set(arguments[0], arguments[1], bracket);
             return null;
         }
 
-        private void setDouble(double n, Object value) {
-            if (n % 1 != 0) throw new RuntimeError(bracket, "Index must be an integer.");
-            int index = (int)n;
-            index = correctIndex(index);
-            setIndex(index, value, bracket);
-        }
-    
-        private void setList(MerlinListInstance indexes, Object value) {
-            if (value instanceof MerlinListInstance) {
-                MerlinListInstance lst = (MerlinListInstance) value;
-    
-                if (indexes.size() != lst.size()) {
-                    throw new RuntimeError(bracket, 
-                        "The sizes of index list " + indexes.size() + " and value list " + lst.size() + " must match.");
-                }
-    
-                int i = 0;
-                for (Object obj : indexes.list) {
-                    if (!checkInt(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
-                    setIndex((int)((double)obj), lst.list.get(i), bracket);
-                    i += 1;
-                }
-            }
-            else {
-                int i = 0;
-                for (Object obj : indexes.list) {
-                    if (!checkInt(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
-                    setIndex((int)((double)obj), value, bracket);
-                    i += 1;
-                }
-            }
+    }
+
+    static class add extends NativeMethod {
+
+        add() {
+            super("add", -256);
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            MerlinListInstance instance = (MerlinListInstance) receiver;
+            for (Object arg : arguments) instance.append(arg);
+            return receiver;
         }
-    
-        private void setIndex (int index, Object value, Token bracket) {
-            index = correctIndex(index);
-            if (index < 0 || index >= instance.list.size()) throw new RuntimeError(bracket, "List index out of range.");
-            instance.list.set(index, value);
+
+    }
+
+    static class pop extends NativeMethod {
+
+        pop() {
+            super("pop", 0);
         }
 
-        private boolean checkInt(Object obj) {
-            if (!(obj instanceof Double)) return false;
-            double n = (double) obj;
-            if (n % 1 != 0) return false;
-            return true;
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token bracket) {
+            MerlinListInstance instance = (MerlinListInstance) receiver;
+            if (instance.list.isEmpty()) throw new RuntimeError(bracket, "List is empty");
+            List<Object> list = instance.mutable();
+            Object result = list.get(list.size() - 1);
+            list.remove(list.size() - 1);
+            return result;
         }
-        
+
     }
 
-    class add implements MerlinCallable {
+    static class sort extends NativeMethod {
 
-        private final MerlinListInstance instance;
+        sort() {
+            super("sort", -1);
+        }
 
-        public add(MerlinListInstance instance) {
-            this.instance = instance;
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            MerlinCallable order = null;
+            if (arguments.length == 1) {
+                if (!(arguments[0] instanceof MerlinCallable))
+                    throw new RuntimeError(paren, "Key or comparator must be MerlinCallable.");
+                order = (MerlinCallable) arguments[0];
+            }
+            ((MerlinListInstance) receiver).sort(interpreter, order, paren);
+            return receiver;
+        }
+
+    }
+
+    static class reverse extends NativeMethod {
+
+        reverse() {
+            super("reverse", 0);
         }
 
         @Override
-        public int arity() {
-            return -256;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            ((MerlinListInstance) receiver).reverse();
+            return receiver;
+        }
+
+    }
+
+    static class indexOf extends NativeMethod {
+
+        indexOf() {
+            super("indexOf", 1);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            for (Object arg : arguments) instance.list.add(arg);
-            return instance;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return Interpreter.box(((MerlinListInstance) receiver).indexOf(arguments[0]));
         }
 
     }
 
-    class pop implements MerlinCallable {
-        private final MerlinListInstance instance;
+    static class bisect extends NativeMethod {
 
-        public pop(MerlinListInstance instance) {
-            this.instance = instance;
+        bisect() {
+            super("bisect", 1);
         }
 
         @Override
-        public int arity() {
-            return 0;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return Interpreter.box(((MerlinListInstance) receiver).bisect(arguments[0], paren));
+        }
+
+    }
+
+    static class binarySearch extends NativeMethod {
+
+        binarySearch() {
+            super("binarySearch", 1);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token bracket) {
-            if (instance.list.isEmpty()) throw new RuntimeError(bracket, "List is empty");
-            Object result = instance.list.get(instance.list.size() - 1);
-            instance.list.remove(instance.list.size() - 1);
-            return result;
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return Interpreter.box(((MerlinListInstance) receiver).binarySearch(arguments[0], paren));
+        }
+
+    }
+
+    static class extend extends NativeMethod {
+
+        extend() {
+            super("extend", 1);
         }
 
-        
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            if (!(arguments[0] instanceof MerlinIterable))
+                throw new RuntimeError(paren, "Argument of 'extend' must be iterable.");
+            ((MerlinListInstance) receiver).extend((MerlinIterable) arguments[0]);
+            return receiver;
+        }
 
     }
 }
@@ -0,0 +1,81 @@
+package com.interpreters.merlin;
+
+import java.util.List;
+
+/// A method of a built-in type written in Java. The type's class keeps one instance of it for
+/// all its objects; like a Merlin method, it gets the object from the call site of
+/// 'object.method(...)' as its receiver, and it is only bound when it is read as a value.
+public abstract class NativeMethod implements MerlinCallable {
+
+    final String name;
+    private final int arity;
+
+    protected NativeMethod(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    public abstract Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren);
+
+    /// the unbound method has no receiver to work on, every call site passes one instead
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        throw new RuntimeError(paren, "Method '" + name + "' must be called on an object.");
+    }
+
+    public MerlinCallable bind(Object receiver) {
+        return new Bound(this, receiver);
+    }
+
+    /// the value of 'object.method' read without a call, the bound method unless the type
+    /// computes a property here instead
+    public Object read(Object receiver) {
+        return bind(receiver);
+    }
+
+    @Override
+    public String toString() {
+        return "<native method '" + name + "'>";
+    }
+
+    private static final class Bound implements MerlinCallable {
+
+        private final NativeMethod method;
+        private final Object receiver;
+
+        Bound(NativeMethod method, Object receiver) {
+            this.method = method;
+            this.receiver = receiver;
+        }
+
+        @Override
+        public int arity() {
+            return method.arity;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+            return method.call(interpreter, receiver, arguments.toArray(), paren);
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, Object[] arguments, Token paren) {
+            return method.call(interpreter, receiver, arguments, paren);
+        }
+
+        @Override
+        public String toString() {
+            return method.toString();
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.interpreters.merlin;
+
+/// Instruction set of the bytecode VM. Operands follow the opcode inline in Chunk.code.
+public final class OpCode {
+
+    private OpCode() {}
+
+    public static final int CONSTANT = 0;           // k
+    public static final int NIL = 1;
+    public static final int TRUE = 2;
+    public static final int FALSE = 3;
+    public static final int POP = 4;
+
+    public static final int GET_LOCAL = 5;          // register
+    public static final int SET_LOCAL = 6;          // register
+    public static final int GET_ENV = 7;            // depth, slot
+    public static final int SET_ENV = 8;            // depth, slot
+    public static final int GET_GLOBAL = 9;         // k(name)
+    public static final int SET_GLOBAL = 10;        // k(name)
+    public static final int DEFINE_GLOBAL = 11;     // k(name)
+    public static final int PUSH_ENV = 12;          // size
+    public static final int POP_ENV = 13;
+
+    public static final int ADD = 14;
+    public static final int SUBTRACT = 15;
+    public static final int MULTIPLY = 16;
+    public static final int DIVIDE = 17;
+    public static final int MODULO = 18;
+    public static final int NEGATE = 19;
+    public static final int NOT = 20;
+    public static final int EQUAL = 21;
+    public static final int NOT_EQUAL = 22;
+    public static final int LESS = 23;
+    public static final int LESS_EQUAL = 24;
+    public static final int GREATER = 25;
+    public static final int GREATER_EQUAL = 26;
+
+    public static final int JUMP = 27;              // target
+    public static final int JUMP_IF_FALSE = 28;     // target
+    public static final int JUMP_IF_TRUE_OR_POP = 29;   // target
+    public static final int JUMP_IF_FALSE_OR_POP = 30;  // target
+
+    public static final int CHECK_CALL = 31;        // k(CallExpr)
+    public static final int CALL = 32;              // argc
+    public static final int RETURN = 33;
+    public static final int CLOSURE = 34;           // k(Chunk)
+
+    public static final int GET_PROPERTY = 35;      // k(InlineCache)
+    public static final int CHECK_INSTANCE = 36;
+    public static final int SET_PROPERTY = 37;      // k(InlineCache)
+    public static final int CHECK_LIST = 38;
+    public static final int GET_INDEX = 39;
+    public static final int SET_INDEX = 40;
+    public static final int LIST = 41;              // count
+    public static final int APPEND = 42;            // register
+
+    public static final int ITER_INIT = 43;         // 0 - for statement, 1 - list comprehension; leaves the cursor
+    public static final int ITER_NEXT = 44;         // register, target, local - stores into the local, or pushes if it's -1
+
+    public static final int CHECK_SUPERCLASS = 46;
+    public static final int CLASS = 47;             // k(ClassInfo)
+    public static final int SUPER_GET = 48;         // k(Token)
+    public static final int SUPER_CHECK = 49;       // argc, target
+    public static final int SUPER_CALL = 50;        // argc
+    public static final int ENUM = 51;              // k(List<Token>)
+    public static final int IMPORT = 52;            // k(ImportStmt)
+
+    public static final int INTEGER_DIVIDE = 53;
+    public static final int BITWISE = 54;           // '&', '|', '^', '<<' and '>>', told apart by the token
+    public static final int COMPLEMENT = 55;
+
+    public static final int GET_METHOD = 56;        // k(InlineCache), k(CallExpr) - pushes the callee under the receiver
+    public static final int INVOKE = 57;            // argc
+
+    public static final int DUP = 58;
+    public static final int DUP2 = 59;
+
+    public static final int GENERATOR = 60;         // first instruction of a generator, returns it
+    public static final int YIELD = 61;
+
+    public static final int CHECK_INDEXABLE = 62;   // a list or a string, the objects GET_INDEX reads
+    public static final int SLICE = 63;             // object, start, end and step, nil for a part left out
+
+    /// superinstructions for the common shapes of loops and statements
+    public static final int STORE_LOCAL = 64;       // register - SET_LOCAL and POP
+    public static final int JUMP_IF_LESS = 65;      // swap, target - '<' of the two operands, swapped if asked, and JUMP_IF_TRUE
+    public static final int JUMP_IF_NOT_LESS = 66;  // swap, target - the same with JUMP_IF_FALSE
+
+}
@@ -0,0 +1,387 @@
+package com.interpreters.merlin;
+
+import java.util.List;
+
+import com.interpreters.merlin.Expr.AssignExpr;
+import com.interpreters.merlin.Expr.BinaryExpr;
+import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
+import com.interpreters.merlin.Expr.FunctionExpr;
+import com.interpreters.merlin.Expr.GetExpr;
+import com.interpreters.merlin.Expr.GroupingExpr;
+import com.interpreters.merlin.Expr.ListComprExpr;
+import com.interpreters.merlin.Expr.ListExpr;
+import com.interpreters.merlin.Expr.ListGetExpr;
+import com.interpreters.merlin.Expr.ListSetExpr;
+import com.interpreters.merlin.Expr.LiteralExpr;
+import com.interpreters.merlin.Expr.LogicExpr;
+import com.interpreters.merlin.Expr.SetExpr;
+import com.interpreters.merlin.Expr.SliceExpr;
+import com.interpreters.merlin.Expr.SuperCallExpr;
+import com.interpreters.merlin.Expr.SuperExpr;
+import com.interpreters.merlin.Expr.TernaryExpr;
+import com.interpreters.merlin.Expr.ThisExpr;
+import com.interpreters.merlin.Expr.UnaryExpr;
+import com.interpreters.merlin.Expr.VariableExpr;
+import com.interpreters.merlin.Stmt.BlockStmt;
+import com.interpreters.merlin.Stmt.ClassDeclStmt;
+import com.interpreters.merlin.Stmt.EnumStmt;
+import com.interpreters.merlin.Stmt.ExpressionStmt;
+import com.interpreters.merlin.Stmt.FORStmt;
+import com.interpreters.merlin.Stmt.ForEachStmt;
+import com.interpreters.merlin.Stmt.FunDeclStmt;
+import com.interpreters.merlin.Stmt.IFStmt;
+import com.interpreters.merlin.Stmt.ImportStmt;
+import com.interpreters.merlin.Stmt.RETURNStmt;
+import com.interpreters.merlin.Stmt.VarDeclStmt;
+import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
+
+/// Runs on the resolved AST before it is executed or compiled for the VM. Operators whose
+/// operands are literals are evaluated once, a branch whose condition is a literal replaces
+/// its conditional, and statements after a 'return' are dropped. An operation that fails,
+/// like a division by zero, is left in place to fail at runtime at its own token.
+/// Each visit returns the node to use instead of the visited one: the node itself, a new
+/// node carrying over the resolver's annotations, or for statements null when nothing is left.
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    public void optimizeStatements(List<Stmt> statements) {
+        for (int i = 0; i < statements.size(); ++i) {
+            Stmt statement = optimize(statements.get(i));
+            if (statement == null) {
+                statements.remove(i--);
+                continue;
+            }
+            statements.set(i, statement);
+            if (statement instanceof RETURNStmt && i + 1 < statements.size()) {
+                statements.subList(i + 1, statements.size()).clear();
+            }
+        }
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+
+    /// the statement of a branch or a loop body, which can't be left out
+    private Stmt branch(Stmt stmt) {
+        Stmt result = optimize(stmt);
+        return result != null ? result : new ExpressionStmt(new LiteralExpr(null));
+    }
+
+    private void optimizeAll(List<Expr> expressions) {
+        for (int i = 0; i < expressions.size(); ++i) expressions.set(i, optimize(expressions.get(i)));
+    }
+
+    private static boolean isLiteral(Expr expr) {
+        return expr instanceof LiteralExpr;
+    }
+
+    private static Object value(Expr expr) {
+        return ((LiteralExpr) expr).value;
+    }
+
+    @Override
+    public Expr visitLiteralExpr(LiteralExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(UnaryExpr expr) {
+        Expr right = optimize(expr.right);
+        if (isLiteral(right)) {
+            try {
+                return new LiteralExpr(Interpreter.unary(expr.operation, value(right)));
+            }
+            catch (RuntimeError error) {}
+        }
+        if (right == expr.right) return expr;
+
+        UnaryExpr result = new UnaryExpr(expr.operation, right);
+        result.kind = expr.kind;
+        return result;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(GroupingExpr expr) {
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(BinaryExpr expr) {
+        Expr left = optimize(expr.left), right = optimize(expr.right);
+        if (isLiteral(left) && isLiteral(right)) {
+            try {
+                return new LiteralExpr(Interpreter.binary(expr.operation, value(left), value(right)));
+            }
+            catch (RuntimeError error) {}
+        }
+        if (left == expr.left && right == expr.right) return expr;
+
+        BinaryExpr result = new BinaryExpr(left, expr.operation, right);
+        result.kind = expr.kind;
+        return result;
+    }
+
+    @Override
+    public Expr visitVariableExpr(VariableExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitAssignExpr(AssignExpr expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) return expr;
+        return new AssignExpr(expr.object, value);
+    }
+
+    @Override
+    public Expr visitCompoundExpr(CompoundExpr expr) {
+        Expr target = optimize(expr.target), value = optimize(expr.value);
+        if (target == expr.target && value == expr.value) return expr;
+
+        CompoundExpr result = new CompoundExpr(target, expr.operation, value);
+        result.kind = expr.kind;
+        result.cache = expr.cache;
+        return result;
+    }
+
+    @Override
+    public Expr visitLogicExpr(LogicExpr expr) {
+        Expr left = optimize(expr.left), right = optimize(expr.right);
+        /// 'or' gives a truthy left operand, 'and' a falsy one, the right operand otherwise
+        if (isLiteral(left)) {
+            boolean truthy = Interpreter.isTruthy(value(left));
+            return truthy == (expr.operation.type == TokenType.OR) ? left : right;
+        }
+        if (left == expr.left && right == expr.right) return expr;
+        return new LogicExpr(left, expr.operation, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(CallExpr expr) {
+        Expr callee = optimize(expr.callee);
+        optimizeAll(expr.arguments);
+        if (callee == expr.callee) return expr;
+        return new CallExpr(callee, expr.paren, expr.arguments);
+    }
+
+    @Override
+    public Expr visitFunctionExpr(FunctionExpr expr) {
+        optimizeStatements(expr.body);
+        return expr;
+    }
+
+    @Override
+    public Expr visitGetExpr(GetExpr expr) {
+        Expr object = optimize(expr.object);
+        if (object == expr.object) return expr;
+
+        GetExpr result = new GetExpr(object, expr.property);
+        result.cache = expr.cache;
+        return result;
+    }
+
+    @Override
+    public Expr visitSetExpr(SetExpr expr) {
+        Expr object = optimize(expr.object), value = optimize(expr.value);
+        if (object == expr.object && value == expr.value) return expr;
+
+        SetExpr result = new SetExpr(object, expr.property, value);
+        result.cache = expr.cache;
+        return result;
+    }
+
+    @Override
+    public Expr visitThisExpr(ThisExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitSuperExpr(SuperExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitSuperCallExpr(SuperCallExpr expr) {
+        optimizeAll(expr.arguments);
+        return expr;
+    }
+
+    @Override
+    public Expr visitListExpr(ListExpr expr) {
+        optimizeAll(expr.elements);
+        return expr;
+    }
+
+    @Override
+    public Expr visitListComprExpr(ListComprExpr expr) {
+        Expr element = optimize(expr.expr), filter = optimize(expr.filter);
+        ForEachStmt loop = (ForEachStmt) optimize(expr.forComprehension);
+        if (element == expr.expr && filter == expr.filter && loop == expr.forComprehension) return expr;
+        return new ListComprExpr(expr.bracket, element, loop, filter);
+    }
+
+    @Override
+    public Expr visitListGetExpr(ListGetExpr expr) {
+        Expr object = optimize(expr.object), index = optimize(expr.index);
+        if (object == expr.object && index == expr.index) return expr;
+        return new ListGetExpr(object, expr.bracket, index);
+    }
+
+    @Override
+    public Expr visitSliceExpr(SliceExpr expr) {
+        Expr object = optimize(expr.object);
+        Expr start = expr.start != null ? optimize(expr.start) : null;
+        Expr end = expr.end != null ? optimize(expr.end) : null;
+        Expr step = expr.step != null ? optimize(expr.step) : null;
+        if (object == expr.object && start == expr.start && end == expr.end && step == expr.step) return expr;
+        return new SliceExpr(object, expr.bracket, start, end, step);
+    }
+
+    @Override
+    public Expr visitListSetExpr(ListSetExpr expr) {
+        ListGetExpr getter = (ListGetExpr) optimize(expr.getter);
+        Expr value = optimize(expr.value);
+        if (getter == expr.getter && value == expr.value) return expr;
+        return new ListSetExpr(getter, value);
+    }
+
+    @Override
+    public Expr visitTernaryExpr(TernaryExpr expr) {
+        Expr condition = optimize(expr.condition);
+        if (isLiteral(condition)) {
+            return optimize(Interpreter.isTruthy(value(condition)) ? expr.left : expr.right);
+        }
+        Expr left = optimize(expr.left), right = optimize(expr.right);
+        if (condition == expr.condition && left == expr.left && right == expr.right) return expr;
+        return new TernaryExpr(condition, left, right);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(ExpressionStmt stmt) {
+        Expr expression = optimize(stmt.expression);
+        /// a literal statement has nothing left to do
+        if (isLiteral(expression)) return null;
+        if (expression == stmt.expression) return stmt;
+        return new ExpressionStmt(expression);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(BlockStmt stmt) {
+        optimizeStatements(stmt.statements);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitIFStmt(IFStmt stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (isLiteral(condition)) {
+            if (Interpreter.isTruthy(value(condition))) return optimize(stmt.thenBranch);
+            return stmt.elseBranch != null ? optimize(stmt.elseBranch) : null;
+        }
+
+        Stmt thenBranch = branch(stmt.thenBranch);
+        Stmt elseBranch = stmt.elseBranch != null ? optimize(stmt.elseBranch) : null;
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) return stmt;
+        IFStmt result = new IFStmt(condition, thenBranch, elseBranch);
+        result.yields = stmt.yields;
+        return result;
+    }
+
+    @Override
+    public Stmt visitWHILEStmt(WHILEStmt stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (isLiteral(condition) && !Interpreter.isTruthy(value(condition))) return null;
+
+        Stmt body = branch(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) return stmt;
+
+        WHILEStmt result = new WHILEStmt(condition, body);
+        result.function = stmt.function;
+        result.yields = stmt.yields;
+        return result;
+    }
+
+    @Override
+    public Stmt visitFORStmt(FORStmt stmt) {
+        Stmt initializer = stmt.initializer != null ? optimize(stmt.initializer) : null;
+        Expr condition = optimize(stmt.condition);
+        Expr increment = stmt.increment != null ? optimize(stmt.increment) : null;
+        Stmt body = branch(stmt.body);
+        if (initializer == stmt.initializer && condition == stmt.condition
+                && increment == stmt.increment && body == stmt.body) return stmt;
+
+        FORStmt result = new FORStmt(initializer, condition, increment, body);
+        result.function = stmt.function;
+        result.yields = stmt.yields;
+        return result;
+    }
+
+    @Override
+    public Stmt visitRETURNStmt(RETURNStmt stmt) {
+        if (stmt.value == null) return stmt;
+        Expr value = optimize(stmt.value);
+        if (value == stmt.value) return stmt;
+
+        RETURNStmt result = new RETURNStmt(stmt.keyword, value);
+        result.tail = stmt.tail && value instanceof CallExpr;
+        return result;
+    }
+
+    @Override
+    public Stmt visitYieldStmt(YieldStmt stmt) {
+        if (stmt.value == null) return stmt;
+        Expr value = optimize(stmt.value);
+        if (value == stmt.value) return stmt;
+        return new YieldStmt(stmt.keyword, value);
+    }
+
+    @Override
+    public Stmt visitForEachStmt(ForEachStmt stmt) {
+        Expr iterable = optimize(stmt.iterable);
+        /// the loop of a list comprehension has no body
+        Stmt body = stmt.body != null ? branch(stmt.body) : null;
+        if (iterable == stmt.iterable && body == stmt.body) return stmt;
+
+        ForEachStmt result = new ForEachStmt(stmt.iter, stmt.in, iterable, body);
+        result.function = stmt.function;
+        result.yields = stmt.yields;
+        return result;
+    }
+
+    @Override
+    public Stmt visitVarDeclStmt(VarDeclStmt stmt) {
+        for (int i = 0; i < stmt.initializers.size(); ++i) {
+            if (stmt.initializers.get(i) != null) stmt.initializers.set(i, optimize(stmt.initializers.get(i)));
+        }
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitFunDeclStmt(FunDeclStmt stmt) {
+        optimize(stmt.description);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassDeclStmt(ClassDeclStmt stmt) {
+        for (FunDeclStmt method : stmt.methods) optimize(method);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitImportStmt(ImportStmt stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitEnumStmt(EnumStmt stmt) {
+        return stmt;
+    }
+
+}
@@ -16,6 +16,9 @@ public class Parser {
     private int current = 0;
 
     private final int max_arguments = 255;
+    /// 'yield' statements parsed so far in the current function, a statement that sees it
+    /// grow while it is parsed contains one
+    private int yields = 0;
 
     public Parser(List<Token> tokens) {
         this.tokens = tokens;
@@ -56,6 +59,7 @@ public class Parser {
         if (match(IF)) return ifStatement();
         if (match(WHILE)) return whileStatement();
         if (match(RETURN)) return returnStatement();
+        if (match(YIELD)) return yieldStatement();
         if (check(FOR) && checkNext(IDENTIFIER)) {advance(); return forEachStatement();}
         if (match(FOR)) return forStatement();
 
@@ -81,8 +85,11 @@ public class Parser {
         VariableExpr iter = (VariableExpr) expr;
         Token in = consume(IN, "Expect 'in' after iterator variable.");
         Expr iterable = expression();
+        int before = yields;
         Stmt body = statement();
-        return new Stmt.ForEachStmt(iter, in, iterable, body);
+        Stmt.ForEachStmt stmt = new Stmt.ForEachStmt(iter, in, iterable, body);
+        stmt.yields = yields > before;
+        return stmt;
     }
 
     private Stmt fromStatement() {
@@ -129,6 +136,15 @@ public class Parser {
         return new Stmt.RETURNStmt(keyword, value);
     }
 
+    private Stmt yieldStatement() {
+        Token keyword = previous();
+        Expr value = null;
+        if (!check(SEMICOLON)) value = expression();
+        consume(SEMICOLON, "Expect ';' after yield statement.");
+        ++yields;
+        return new Stmt.YieldStmt(keyword, value);
+    }
+
     private Stmt forStatement() {
         consume(LEFT_PAREN, "Expect '(' after 'for'.");
 
@@ -152,33 +168,45 @@ public class Parser {
         }
         consume(RIGHT_PAREN, "Expect ')' after clauses.");
 
+        int before = yields;
         Stmt body = statement();
-        Stmt forStmt =  new Stmt.FORStmt(initializer, condition, increment, body);
-        return new Stmt.BlockStmt(Arrays.asList(forStmt));
+        Stmt.FORStmt forStmt =  new Stmt.FORStmt(initializer, condition, increment, body);
+        Stmt.BlockStmt block = new Stmt.BlockStmt(Arrays.asList(forStmt));
+        forStmt.yields = block.yields = yields > before;
+        return block;
     }
 
     private Stmt whileStatement() {
         consume(LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after condition.");
+        int before = yields;
         Stmt body = statement();
-        return new Stmt.WHILEStmt(condition, body);
+        Stmt.WHILEStmt stmt = new Stmt.WHILEStmt(condition, body);
+        stmt.yields = yields > before;
+        return stmt;
     }
 
     private Stmt ifStatement() {
         consume(LEFT_PAREN, "Expect '(' after 'if'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after condition.");
+        int before = yields;
         Stmt thenBranch = statement();
         Stmt elseBranch = null;
         if (match(ELSE)) {
             elseBranch = statement();
         }
-        return new Stmt.IFStmt(condition, thenBranch, elseBranch);
+        Stmt.IFStmt stmt = new Stmt.IFStmt(condition, thenBranch, elseBranch);
+        stmt.yields = yields > before;
+        return stmt;
     }
 
     private Stmt blockStatement() {
-        return new Stmt.BlockStmt(block("block"));
+        int before = yields;
+        Stmt.BlockStmt stmt = new Stmt.BlockStmt(block("block"));
+        stmt.yields = yields > before;
+        return stmt;
     }
 
     private List<Stmt> block(String where) {
@@ -228,29 +256,24 @@ public class Parser {
     private Expr assignment() {
         Expr expr = ternar();
         if (match(EQUAL, PLUS_EQUAL, MINUS_EQUAL, STAR_EQUAL, SLASH_EQUAL, PERCENT_EQUAL)) {
-            if (expr instanceof Expr.VariableExpr) {
-                Token operator = previous();
+            Token operator = previous();
+            if (operator.type != EQUAL) {
+                if (expr instanceof Expr.VariableExpr || expr instanceof Expr.GetExpr || expr instanceof Expr.ListGetExpr) {
+                    Expr value = assignment();
+                    return new Expr.CompoundExpr(expr, compoundOperator(operator), value);
+                }
+            }
+            else if (expr instanceof Expr.VariableExpr) {
                 Expr value = assignment();
-                
-                if (operator.type != EQUAL) value = replaceOperator(operator, expr, value);
-                
                 return new Expr.AssignExpr((Expr.VariableExpr) expr, value);
             }
             else if (expr instanceof Expr.GetExpr) {
-                Token operator = previous();
                 Expr value = assignment();
-
-                if (operator.type != EQUAL) value = replaceOperator(operator, expr, value);
-
                 Expr.GetExpr get = (Expr.GetExpr) expr;
                 return new Expr.SetExpr(get.object, get.property, value);
             }
             else if (expr instanceof Expr.ListGetExpr) {
-                Token operator = previous();
                 Expr value = assignment();
-
-                if (operator.type != EQUAL) value = replaceOperator(operator, expr, value);
-                
                 Expr.ListGetExpr getter = (Expr.ListGetExpr) expr;
                 return new Expr.ListSetExpr(getter, value);
             }
@@ -308,8 +331,52 @@ public class Parser {
     }
 
     private Expr comparison() {
-        Expr expr = term();
+        Expr expr = bitOr();
         while (match(LESS, LESS_EQUAL, GREATER, GREATER_EQUAL)) {
+            Token operation = previous();
+            Expr right = bitOr();
+            expr = new Expr.BinaryExpr(expr, operation, right);
+        }
+
+        return expr;
+    }
+
+    private Expr bitOr() {
+        Expr expr = bitXor();
+        while (match(PIPE)) {
+            Token operation = previous();
+            Expr right = bitXor();
+            expr = new Expr.BinaryExpr(expr, operation, right);
+        }
+
+        return expr;
+    }
+
+    private Expr bitXor() {
+        Expr expr = bitAnd();
+        while (match(CARET)) {
+            Token operation = previous();
+            Expr right = bitAnd();
+            expr = new Expr.BinaryExpr(expr, operation, right);
+        }
+
+        return expr;
+    }
+
+    private Expr bitAnd() {
+        Expr expr = shift();
+        while (match(AMPERSAND)) {
+            Token operation = previous();
+            Expr right = shift();
+            expr = new Expr.BinaryExpr(expr, operation, right);
+        }
+
+        return expr;
+    }
+
+    private Expr shift() {
+        Expr expr = term();
+        while (match(LESS_LESS, GREATER_GREATER)) {
             Token operation = previous();
             Expr right = term();
             expr = new Expr.BinaryExpr(expr, operation, right);
@@ -331,7 +398,7 @@ public class Parser {
 
     private Expr factor() {
         Expr expr = mod();
-        while (match(STAR, SLASH)) {
+        while (match(STAR, SLASH, BACKSLASH)) {
             Token operation = previous();
             Expr right = mod();
             expr = new Expr.BinaryExpr(expr, operation, right);
@@ -352,7 +419,7 @@ public class Parser {
     }
 
     private Expr unary() {
-        if (match(BANG, MINUS)) {
+        if (match(BANG, MINUS, TILDE)) {
             Token operation = previous();
             Expr right = unary();
             return new Expr.UnaryExpr(operation, right);
@@ -375,9 +442,12 @@ public class Parser {
             }
             else if (match(LEFT_BRACKET)) {
                 Token bracket = previous();
-                Expr index = expression();
-                consume(RIGHT_BRACKET, "Expect ']' after index.");
-                expr = new Expr.ListGetExpr(expr, bracket, index);
+                Expr index = check(COLON) ? null : expression();
+                if (match(COLON)) expr = slice(expr, bracket, index);
+                else {
+                    consume(RIGHT_BRACKET, "Expect ']' after index.");
+                    expr = new Expr.ListGetExpr(expr, bracket, index);
+                }
             }
             else break;
         }
@@ -385,6 +455,14 @@ public class Parser {
         return expr;
     }
 
+    /// the rest of 'object[start:end:step]' after the first ':', every part can be left out
+    private Expr slice(Expr object, Token bracket, Expr start) {
+        Expr end = check(COLON) || check(RIGHT_BRACKET) ? null : expression();
+        Expr step = match(COLON) && !check(RIGHT_BRACKET) ? expression() : null;
+        consume(RIGHT_BRACKET, "Expect ']' after slice.");
+        return new Expr.SliceExpr(object, bracket, start, end, step);
+    }
+
     private Expr primary() {
         if (match(NIL)) return new Expr.LiteralExpr(null);
         if (match(TRUE)) return new Expr.LiteralExpr(true);
@@ -410,7 +488,9 @@ public class Parser {
         if (match(LEFT_BRACKET)) return parseList();
 
         if (match(LEFT_PAREN)) {
+            Token paren = previous();
             Expr expr = expression();
+            if (match(FOR)) return lazyComprehension(expr, paren);
             consume(RIGHT_PAREN, "Expect ')' after expression.");
             return new Expr.GroupingExpr(expr);
         }
@@ -450,6 +530,41 @@ public class Parser {
         return new Expr.ListComprExpr(bracket, expr, new Stmt.ForEachStmt(iter, in, iterable, null), filter);
     }
 
+    /// '(expr for x in xs if cond)' is a call of an anonymous generator with xs as its argument,
+    /// so only xs is evaluated right away; the elements are computed as they are taken, and a
+    /// chain of these passes each element through all the stages in a single pass
+    private Expr lazyComprehension(Expr expr, Token paren) {
+        Expr var = primary();
+        if (!(var instanceof Expr.VariableExpr))
+            throw error(previous(), "Expect iterator variable in generator expression.");
+        VariableExpr iter = (VariableExpr) var;
+        Token in = consume(IN, "Expect 'in' after iterator variable in generator expression.");
+        Expr iterable = expression();
+        Expr filter = null;
+        if (match(IF)) filter = expression();
+        consume(RIGHT_PAREN, "Expect ')' after generator expression.");
+
+        /// not an identifier a program can spell, so it never shadows one
+        Token source = new Token(IDENTIFIER, "(source)", null, in.line, in.position, in.file);
+        Stmt body = new Stmt.YieldStmt(in, expr);
+        if (filter != null) {
+            Stmt.IFStmt branch = new Stmt.IFStmt(filter, body, null);
+            branch.yields = true;
+            body = branch;
+        }
+        Stmt.ForEachStmt loop = new Stmt.ForEachStmt(iter, in, new VariableExpr(source), body);
+        loop.yields = true;
+
+        List<Stmt> statements = new ArrayList<>();
+        statements.add(loop);
+        Expr.FunctionExpr function = new Expr.FunctionExpr(paren, new ArrayList<>(Arrays.asList(source)), statements);
+        function.generator = true;
+
+        List<Expr> arguments = new ArrayList<>();
+        arguments.add(iterable);
+        return new Expr.CallExpr(function, paren, arguments);
+    }
+
     private Expr.FunctionExpr parseAnonymusFunction() {
         Token paren = consume(LEFT_PAREN, "Expect '(' before parameters.");
         List<Token> parameters = new ArrayList<>();
@@ -460,12 +575,18 @@ public class Parser {
         }
         consume(RIGHT_PAREN, "Expect ')' after parameters.");
         consume(LEFT_BRACE, "Expect '{' before body.");
+        int enclosing = yields;
+        yields = 0;
         List<Stmt> body = new ArrayList<>();
         while (!check(RIGHT_BRACE) && !isAtEnd()) {
             body.add(declaration());
         }
         consume(RIGHT_BRACE, "Expect '}' after body.");
-        return new Expr.FunctionExpr(paren, parameters, body);
+        Expr.FunctionExpr function = new Expr.FunctionExpr(paren, parameters, body);
+        /// a body with a 'yield' makes the function a generator
+        function.generator = yields > 0;
+        yields = enclosing;
+        return function;
     }
 
     private List<Expr> parseArguments() {
@@ -483,7 +604,8 @@ public class Parser {
         return arguments;
     }
 
-    private Expr replaceOperator(Token operator, Expr expr, Expr value) {
+    /// the binary operator of a compound assignment, it keeps the lexeme for error messages
+    private Token compoundOperator(Token operator) {
         
         TokenType type = null;
 
@@ -494,15 +616,13 @@ public class Parser {
             case SLASH_EQUAL: type = SLASH; break;
             case PERCENT_EQUAL: type = PERCENT; break;
         }
-        Token operation = new Token(
+        return new Token(
                 type, 
                 operator.lexeme, 
                 operator.literal, 
                 operator.line, 
                 operator.position,
                 operator.file);
-            
-        return new Expr.BinaryExpr(expr, operation, value);
     }
 
     private boolean checkNext(TokenType type) {
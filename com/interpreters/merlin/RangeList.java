@@ -0,0 +1,64 @@
+package com.interpreters.merlin;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/// The elements of range(start, end, step) computed on access, so a range takes the same
+/// memory whatever its length. A MerlinListInstance holding one copies it into a real list
+/// the first time it is changed.
+public final class RangeList extends AbstractList<Object> implements RandomAccess {
+
+    public final long start;
+    public final long step;
+    private final int size;
+
+    public RangeList(long start, long step, int size) {
+        this.start = start;
+        this.step = step;
+        this.size = size;
+    }
+
+    /// the number of elements of range(start, end, step), -1 if it doesn't fit into an int
+    public static long size(long start, long end, long step) {
+        long size;
+        try {
+            if (step > 0) size = start < end ? (Math.subtractExact(end, start) - 1) / step + 1 : 0;
+            else size = start > end ? (Math.subtractExact(start, end) - 1) / Math.negateExact(step) + 1 : 0;
+        }
+        catch (ArithmeticException overflow) {
+            return -1;
+        }
+        return size <= Integer.MAX_VALUE ? size : -1;
+    }
+
+    /// a slice of a range is a range again
+    RangeList slice(Slice slice) {
+        return new RangeList(start + slice.start * step, step * slice.step, slice.size);
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return Interpreter.box(start + index * step);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(Object object) {
+        if (!(object instanceof Long)) return super.indexOf(object);
+        long offset = (long) object - start;
+        if (offset % step != 0) return -1;
+        long index = offset / step;
+        return index >= 0 && index < size ? (int) index : -1;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object) >= 0;
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.Stack;
 import com.interpreters.merlin.Expr.AssignExpr;
 import com.interpreters.merlin.Expr.BinaryExpr;
 import com.interpreters.merlin.Expr.CallExpr;
+import com.interpreters.merlin.Expr.CompoundExpr;
 import com.interpreters.merlin.Expr.FunctionExpr;
 import com.interpreters.merlin.Expr.GetExpr;
 import com.interpreters.merlin.Expr.GroupingExpr;
@@ -20,6 +21,7 @@ import com.interpreters.merlin.Expr.ListSetExpr;
 import com.interpreters.merlin.Expr.LiteralExpr;
 import com.interpreters.merlin.Expr.LogicExpr;
 import com.interpreters.merlin.Expr.SetExpr;
+import com.interpreters.merlin.Expr.SliceExpr;
 import com.interpreters.merlin.Expr.SuperCallExpr;
 import com.interpreters.merlin.Expr.SuperExpr;
 import com.interpreters.merlin.Expr.TernaryExpr;
@@ -38,6 +40,7 @@ import com.interpreters.merlin.Stmt.ImportStmt;
 import com.interpreters.merlin.Stmt.RETURNStmt;
 import com.interpreters.merlin.Stmt.VarDeclStmt;
 import com.interpreters.merlin.Stmt.WHILEStmt;
+import com.interpreters.merlin.Stmt.YieldStmt;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
@@ -56,26 +59,46 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             public boolean defined = false;
             public boolean used = false;
             public boolean initialized = false;
+            public int slot = -1;
         }
         private final Map<String, State> variables = new HashMap<>();
         private final Map<String, Token> tokens = new HashMap<>();
+        /// the global scope and class scopes keep their values by name
+        private final boolean indexed;
+        private int size = 0;
+
+        Scope(boolean indexed) {
+            this.indexed = indexed;
+        }
 
         public boolean contains(String name) {
             return variables.containsKey(name);
         }
 
         public void defineNative(String name) {
-            State state = new State();
+            State state = newState();
             state.defined = state.used = state.initialized = true;
             variables.put(name, state);
         }
 
-        public void declare(Token name) {
+        public int declare(Token name) {
             if (variables.containsKey(name.lexeme)) {
                 Merlin.error(name, "Redefinition of variable.");
             }
-            variables.put(name.lexeme, new State());
+            State state = newState();
+            variables.put(name.lexeme, state);
             tokens.put(name.lexeme, name);
+            return state.slot;
+        }
+
+        private State newState() {
+            State state = new State();
+            if (indexed) state.slot = size++;
+            return state;
+        }
+
+        public int slot(String name) {
+            return variables.get(name).slot;
         }
 
         public void define(String name) {
@@ -124,19 +147,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     /// List -> [defined, used, initialized]
     private final Stack<Scope> scopes = new Stack<>();
-    private final Map<Expr, Integer> distances = new HashMap<>();
 
     private FunctionType currentFunction = FunctionType.NONE;
+    /// loops count their back edges on the function they belong to
+    private FunctionExpr enclosingFunction = null;
     private ClassType currentClass = ClassType.NONE;
 
 
 
-    public Map<Expr, Integer> resolveStatements(List<Stmt> statements) {
-        beginScope();
+    public void resolveStatements(List<Stmt> statements) {
+        beginScope(false);
         initNative();
         resolve(statements);
         endScope();
-        return distances;
     }
 
     private void initNative() {
@@ -165,7 +188,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         expr.accept(this);
     }
 
-    private void resolveLocal(Token name, Expr expr, boolean initialize) {
+    /// returns the number of scopes between the current one and the one declaring the name
+    private int resolveLocal(Token name, boolean initialize) {
         for (int i = scopes.size() - 1; i >= 0; --i) {
             if (scopes.get(i).contains(name.lexeme)) {
                 scopes.get(i).use(name.lexeme);
@@ -176,16 +200,19 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
                     Merlin.error(name, "Can't read local variable in its own initializer.");
                 }
 
-                distances.put(expr, scopes.size() - 1 - i);
-
-                if (!scopes.get(i).isInitialized(name.lexeme)) {
-                    if (!showWarnings) return;
+                if (!scopes.get(i).isInitialized(name.lexeme) && showWarnings) {
                     Merlin.warning(name, "Using an uninitialized variable.");
                 }
-                return;
+                return scopes.size() - 1 - i;
             }
         }
         Merlin.error(name, "Undefined variable.");
+        return -1;
+    }
+
+    private void resolveVariable(VariableExpr expr, boolean initialize) {
+        expr.depth = resolveLocal(expr.name, initialize);
+        if (expr.depth >= 0) expr.slot = scopes.get(scopes.size() - 1 - expr.depth).slot(expr.name.lexeme);
     }
 
     @Override
@@ -198,7 +225,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitBlockStmt(BlockStmt stmt) {
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        stmt.size = endScope();
         return null;
     }
 
@@ -212,6 +239,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitWHILEStmt(WHILEStmt stmt) {
+        stmt.function = enclosingFunction;
         resolve(stmt.condition);
         resolve(stmt.body);
         return null;
@@ -219,6 +247,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFORStmt(FORStmt stmt) {
+        stmt.function = enclosingFunction;
         if (stmt.initializer != null) resolve(stmt.initializer);
         resolve(stmt.condition);
         if (stmt.increment != null) resolve(stmt.increment);
@@ -235,13 +264,30 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             Merlin.error(stmt.keyword, "Can't return a value in the constructor.");
         }
         if (stmt.value != null) resolve(stmt.value);
+        /// the caller's frame is not needed after a call that is returned right away,
+        /// a generator has no caller waiting for its result
+        boolean generator = enclosingFunction != null && enclosingFunction.generator;
+        stmt.tail = stmt.value instanceof CallExpr && !generator;
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(YieldStmt stmt) {
+        if (currentFunction == FunctionType.NONE) {
+            Merlin.error(stmt.keyword, "Can't yield from top-level code.");
+        }
+        if (isConstructor) {
+            Merlin.error(stmt.keyword, "Can't yield in the constructor.");
+        }
+        if (stmt.value != null) resolve(stmt.value);
         return null;
     }
 
     @Override
     public Void visitVarDeclStmt(VarDeclStmt stmt) {
+        stmt.slots = new int[stmt.names.size()];
         for (int i = 0; i < stmt.names.size(); ++i) {
-            declare(stmt.names.get(i));
+            stmt.slots[i] = declare(stmt.names.get(i));
             if (stmt.initializers.get(i) != null) {
                 initialize(stmt.names.get(i).lexeme);
                 resolve(stmt.initializers.get(i));
@@ -254,7 +300,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunDeclStmt(FunDeclStmt stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         initialize(stmt.name.lexeme);
         resolve(stmt.description);
         define(stmt.name.lexeme);
@@ -295,13 +341,23 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(VariableExpr expr) {
-        resolveLocal(expr.name, expr, false);
+        resolveVariable(expr, false);
         return null;
     }
 
     @Override
     public Void visitAssignExpr(AssignExpr expr) {
-        resolveLocal(expr.object.name, expr.object, true);
+        resolveVariable(expr.object, true);
+        resolve(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCompoundExpr(CompoundExpr expr) {
+        /// the target is read and written, a variable counts as assigned like with '='
+        if (expr.target instanceof VariableExpr) resolveVariable((VariableExpr) expr.target, true);
+        else resolve(expr.target);
+        if (expr.target instanceof GetExpr) expr.cache = new InlineCache(((GetExpr) expr.target).property);
         resolve(expr.value);
         return null;
     }
@@ -322,12 +378,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitGetExpr(GetExpr expr) {
+        expr.cache = new InlineCache(expr.property);
         resolve(expr.object);
         return null;
     }
 
     @Override
     public Void visitSetExpr(SetExpr expr) {
+        expr.cache = new InlineCache(expr.property);
         resolve(expr.object);
         resolve(expr.value);
         return null;
@@ -359,6 +417,15 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitSliceExpr(SliceExpr expr) {
+        resolve(expr.object);
+        if (expr.start != null) resolve(expr.start);
+        if (expr.end != null) resolve(expr.end);
+        if (expr.step != null) resolve(expr.step);
+        return null;
+    }
+
     @Override
     public Void visitListSetExpr(ListSetExpr expr) {
         resolve(expr.getter);
@@ -372,10 +439,22 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             Merlin.error(expr.keyword, "Can't use 'this' outside of a class.");
         }
 
-        resolveLocal(expr.keyword, expr, false);
+        expr.depth = resolveLocal(expr.keyword, false);
+        expr.slot = slot(expr.keyword.lexeme, expr.depth);
         return null;
     }
 
+    /// slot of the name in the scope 'depth' levels up, -1 for scopes that keep names
+    private int slot(String name, int depth) {
+        if (depth < 0) return -1;
+        return scopes.get(scopes.size() - 1 - depth).slot(name);
+    }
+
+    /// 'this' of the method a 'super' expression is in
+    private int resolveThis(Token keyword) {
+        return resolveLocal(new Token(TokenType.THIS, "this", null, keyword.line, keyword.position, keyword.file), false);
+    }
+
     @Override
     public Void visitSuperExpr(SuperExpr expr) {
         if (currentClass == ClassType.NONE) {
@@ -384,7 +463,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         else if (currentClass != ClassType.SUBCLASS) {
             Merlin.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
         }
-        resolveLocal(expr.keyword, expr, false);
+        expr.depth = resolveLocal(expr.keyword, false);
+        expr.thisDepth = resolveThis(expr.keyword);
+        expr.thisSlot = slot("this", expr.thisDepth);
         return null;
     }
 
@@ -401,7 +482,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             Merlin.error(expr.keyword, "can't call a superclass constructor 'super(args)' outside of a constructor.");
         }
 
-        resolveLocal(expr.keyword, expr, false);
+        expr.depth = resolveLocal(expr.keyword, false);
+        expr.thisDepth = resolveThis(expr.keyword);
+        expr.thisSlot = slot("this", expr.thisDepth);
         for (Expr arg : expr.arguments) resolve(arg);
 
         return null;
@@ -410,21 +493,28 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitFunctionExpr(FunctionExpr expr) {
         FunctionType tmp = currentFunction;
+        FunctionExpr enclosing = enclosingFunction;
+        /// a nested function captures the frames of the enclosing one, those must stay environments
+        if (enclosing != null) enclosing.captures = true;
         currentFunction = FunctionType.FUNCTION;
+        enclosingFunction = expr;
         beginScope();
         for (Token parameter : expr.parameters) {
             declare(parameter);
             define(parameter.lexeme);
             initialize(parameter.lexeme);
         }
+        /// a method gets its receiver in the slot after the parameters
+        if (expr.method) defineNative("this");
         resolve(expr.body);
-        endScope();
+        expr.size = endScope();
         currentFunction = tmp;
+        enclosingFunction = enclosing;
         return null;
     }
 
-    private void declare(Token name) {
-        scopes.peek().declare(name);
+    private int declare(Token name) {
+        return scopes.peek().declare(name);
     }
 
     private void define(String name) {
@@ -444,34 +534,41 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void beginScope() {
-        scopes.push(new Scope());
+        beginScope(true);
+    }
+
+    private void beginScope(boolean indexed) {
+        scopes.push(new Scope(indexed));
     }
 
-    private void endScope() {
-        for (Token token : scopes.peek().getUnused()) {
-            if (!showWarnings) return;
-            Merlin.warning(token, "Variable is not used.");
+    /// returns the number of slots the scope needs at runtime
+    private int endScope() {
+        if (showWarnings) {
+            for (Token token : scopes.peek().getUnused()) {
+                Merlin.warning(token, "Variable is not used.");
+            }
         }
-        scopes.pop();
+        return scopes.pop().size;
     }
 
     @Override
     public Void visitClassDeclStmt(ClassDeclStmt stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         define(stmt.name.lexeme);
         initialize(stmt.name.lexeme);
         if (stmt.superclass != null) {
             resolve(stmt.superclass);
-            beginScope();
+            beginScope(false);
             scopes.peek().defineNative("super");
         }
-        beginScope();
-        scopes.peek().defineNative("this");
+        /// the names of the methods, 'this' is a slot of each method's own frame
+        beginScope(false);
         ClassType tmp = currentClass;
         currentClass = stmt.superclass != null ? ClassType.SUBCLASS : ClassType.CLASS;
         boolean previous = isConstructor;
         for (Stmt.FunDeclStmt method : stmt.methods) {
             isConstructor = method.name.lexeme.equals("init");
+            method.description.method = true;
             resolve(method);
             use(method.name.lexeme);
         }
@@ -487,7 +584,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitImportStmt(ImportStmt stmt) {
-        declare(stmt.alias);
+        stmt.slot = declare(stmt.alias);
         define(stmt.alias.lexeme);
         initialize(stmt.alias.lexeme);
 
@@ -496,6 +593,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitForEachStmt(ForEachStmt stmt) {
+        stmt.function = enclosingFunction;
         beginScope();
         defineNative(stmt.iter.name.lexeme);
         resolve(stmt.iter);
@@ -507,7 +605,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitEnumStmt(EnumStmt stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         define(stmt.name.lexeme);
         initialize(stmt.name.lexeme);
         return null;
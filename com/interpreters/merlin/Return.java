@@ -1,14 +0,0 @@
-package com.interpreters.merlin;
-
-public class Return extends RuntimeException {
-    
-    final Object value;
-
-    Return(Object value) {
-        super(null, null, false, false);
-        this.value = value;
-    }
-    
-}
-
-
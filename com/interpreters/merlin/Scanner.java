@@ -40,6 +40,7 @@ public class Scanner {
         keywords.put("in", IN);
         keywords.put("from", FROM);
         keywords.put("enum", ENUM);
+        keywords.put("yield", YIELD);
     }
 
 
@@ -84,6 +85,11 @@ public class Scanner {
             case '-': addToken(match('=') ? MINUS_EQUAL : MINUS); break;
             case '*': addToken(match('=') ? STAR_EQUAL : STAR); break;
             case '%': addToken(match('=') ? PERCENT_EQUAL : PERCENT); break;
+            case '\\': addToken(BACKSLASH); break;
+            case '&': addToken(AMPERSAND); break;
+            case '|': addToken(PIPE); break;
+            case '^': addToken(CARET); break;
+            case '~': addToken(TILDE); break;
             case ';': addToken(SEMICOLON); break;
             case '?': addToken(QUESTION); break;
             case ':': addToken(COLON); break;
@@ -97,8 +103,14 @@ public class Scanner {
                 if (match('/')) comment();
                 else addToken(match('=') ? SLASH_EQUAL : SLASH);
                 break;
-            case '<': addToken((match('=') ? LESS_EQUAL : LESS)); break;
-            case '>': addToken((match('=') ? GREATER_EQUAL : GREATER)); break;
+            case '<':
+                if (match('<')) addToken(LESS_LESS);
+                else addToken((match('=') ? LESS_EQUAL : LESS));
+                break;
+            case '>':
+                if (match('>')) addToken(GREATER_GREATER);
+                else addToken((match('=') ? GREATER_EQUAL : GREATER));
+                break;
             case '=': addToken((match('=') ? EQUAL_EQUAL : EQUAL)); break;
             case '!': addToken((match('=') ? BANG_EQUAL : BANG)); break;
 
@@ -127,7 +139,14 @@ public class Scanner {
         }
 
         String lexeme = source.substring(start, current);
-        Double literal = Double.parseDouble(lexeme);
+        Object literal;
+        try {
+            /// literals without a fraction are integers, too large ones stay doubles
+            literal = lexeme.indexOf('.') < 0 ? (Object) Long.parseLong(lexeme) : Double.parseDouble(lexeme);
+        }
+        catch (NumberFormatException exception) {
+            literal = Double.parseDouble(lexeme);
+        }
         tokens.add(new Token(NUMBER, lexeme, literal, line, position, file));
     }
 
@@ -0,0 +1,48 @@
+package com.interpreters.merlin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/// Hidden class of an instance: the names of its fields in the order they were first
+/// assigned, mapped to indexes into the instance's value array. Every class has a root
+/// shape without fields; assigning a new field moves an instance along a transition to
+/// the child shape, so instances whose 'init' assigns the same fields in the same order
+/// share one shape.
+final class Shape {
+
+    final MerlinClass description;
+    final int size;
+    private final Map<String, Integer> slots;
+    private Map<String, Shape> transitions = null;
+
+    Shape(MerlinClass description) {
+        this(description, new HashMap<>());
+    }
+
+    private Shape(MerlinClass description, Map<String, Integer> slots) {
+        this.description = description;
+        this.size = slots.size();
+        this.slots = slots;
+    }
+
+    /// index of the field in the value array, -1 if instances of this shape don't have it
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /// the shape after adding the field, its slot is the last one
+    Shape with(String name) {
+        if (transitions == null) transitions = new HashMap<>();
+        Shape next = transitions.get(name);
+        if (next == null) {
+            Map<String, Integer> childSlots = new HashMap<>(slots);
+            childSlots.put(name, size);
+            next = new Shape(description, childSlots);
+            transitions.put(name, next);
+            description.fieldsSeen(next.size);
+        }
+        return next;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.interpreters.merlin;
+
+/// The positions picked by 'object[start:end:step]' from an object of the given length. Any
+/// part can be nil: the step defaults to 1, and the bounds to the whole object in the step's
+/// direction. Negative bounds count from the end, and bounds out of range are clamped, so a
+/// slice is never an error but for its types and a zero step.
+public final class Slice {
+
+    public final int start;
+    public final int step;
+    public final int size;
+
+    public Slice(int length, Object start, Object end, Object step, Token bracket) {
+        int by = step == null ? 1 : bound(step, bracket);
+        if (by == 0) throw new RuntimeError(bracket, "Slice step can't be zero.");
+
+        /// a negative step walks from the last element down to the first one
+        long lower = by > 0 ? 0 : -1, upper = by > 0 ? length : length - 1;
+        long from = start == null ? (by > 0 ? lower : upper) : clamp(bound(start, bracket), length, lower, upper);
+        long to = end == null ? (by > 0 ? upper : lower) : clamp(bound(end, bracket), length, lower, upper);
+
+        this.start = (int) from;
+        this.step = by;
+        this.size = (int) RangeList.size(from, to, by);
+    }
+
+    private static int bound(Object value, Token bracket) {
+        if (!Interpreter.isInteger(value)) throw new RuntimeError(bracket, "Slice bounds and step must be integers.");
+        return Interpreter.toInt(value);
+    }
+
+    private static long clamp(long bound, int length, long lower, long upper) {
+        if (bound < 0) bound += length;
+        return Math.max(lower, Math.min(upper, bound));
+    }
+
+}
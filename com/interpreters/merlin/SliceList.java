@@ -0,0 +1,55 @@
+package com.interpreters.merlin;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/// The elements of a slice read through to the storage of the list it was taken from, so a
+/// slice takes the same memory whatever its length. Neither side is changed in place while
+/// they share the storage: a MerlinListInstance copies its elements into storage of its own
+/// before the first change, the same way it does with a RangeList.
+final class SliceList extends AbstractList<Object> implements RandomAccess {
+
+    private final List<Object> source;
+    private final int start;
+    private final int step;
+    private final int size;
+
+    SliceList(List<Object> source, Slice slice) {
+        this(source, slice.start, slice.step, slice.size);
+    }
+
+    private SliceList(List<Object> source, int start, int step, int size) {
+        this.source = source;
+        this.start = start;
+        this.step = step;
+        this.size = size;
+    }
+
+    /// a slice of a slice reads the same storage, only with the positions combined
+    SliceList slice(Slice slice) {
+        return new SliceList(source, start + slice.start * step, step * slice.step, slice.size);
+    }
+
+    /// the elements in storage of their own, unboxed when the source is
+    List<Object> copy() {
+        if (source instanceof DoubleList) return ((DoubleList) source).copy(start, step, size);
+        if (source instanceof LongList) return ((LongList) source).copy(start, step, size);
+        List<Object> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) elements.add(source.get(start + i * step));
+        return elements;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return source.get(start + index * step);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.interpreters.merlin;
+
+/// Kinds a BinaryExpr, CompoundExpr or UnaryExpr node rewrites itself to. A node starts UNINITIALIZED,
+/// specializes to the operand types of its first execution and falls back to GENERIC
+/// for good as soon as its guard sees other types.
+public final class Specialization {
+
+    private Specialization() {}
+
+    public static final int UNINITIALIZED = 0;
+    public static final int GENERIC = 1;
+
+    public static final int ADD_DOUBLE = 2;
+    public static final int SUBTRACT_DOUBLE = 3;
+    public static final int MULTIPLY_DOUBLE = 4;
+    public static final int DIVIDE_DOUBLE = 5;
+    public static final int MODULO_DOUBLE = 6;
+    public static final int LESS_DOUBLE = 7;
+    public static final int LESS_EQUAL_DOUBLE = 8;
+    public static final int GREATER_DOUBLE = 9;
+    public static final int GREATER_EQUAL_DOUBLE = 10;
+    public static final int EQUAL_DOUBLE = 11;
+    public static final int NOT_EQUAL_DOUBLE = 12;
+
+    public static final int ADD_STRING = 13;
+    public static final int LESS_STRING = 14;
+    public static final int LESS_EQUAL_STRING = 15;
+    public static final int GREATER_STRING = 16;
+    public static final int GREATER_EQUAL_STRING = 17;
+
+    public static final int ADD_LIST = 18;
+
+    public static final int NEGATE_DOUBLE = 19;
+
+    public static final int ADD_LONG = 20;
+    public static final int SUBTRACT_LONG = 21;
+    public static final int MULTIPLY_LONG = 22;
+    public static final int MODULO_LONG = 23;
+    public static final int LESS_LONG = 24;
+    public static final int LESS_EQUAL_LONG = 25;
+    public static final int GREATER_LONG = 26;
+    public static final int GREATER_EQUAL_LONG = 27;
+    public static final int EQUAL_LONG = 28;
+    public static final int NOT_EQUAL_LONG = 29;
+    public static final int NEGATE_LONG = 30;
+
+    static int binary(TokenType operation, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            switch (operation) {
+                case PLUS: return ADD_DOUBLE;
+                case MINUS: return SUBTRACT_DOUBLE;
+                case STAR: return MULTIPLY_DOUBLE;
+                case SLASH: return DIVIDE_DOUBLE;
+                case PERCENT: return MODULO_DOUBLE;
+                case LESS: return LESS_DOUBLE;
+                case LESS_EQUAL: return LESS_EQUAL_DOUBLE;
+                case GREATER: return GREATER_DOUBLE;
+                case GREATER_EQUAL: return GREATER_EQUAL_DOUBLE;
+                case EQUAL_EQUAL: return EQUAL_DOUBLE;
+                case BANG_EQUAL: return NOT_EQUAL_DOUBLE;
+                default: return GENERIC;
+            }
+        }
+        if (left instanceof Long && right instanceof Long) {
+            switch (operation) {
+                case PLUS: return ADD_LONG;
+                case MINUS: return SUBTRACT_LONG;
+                case STAR: return MULTIPLY_LONG;
+                case PERCENT: return MODULO_LONG;
+                case LESS: return LESS_LONG;
+                case LESS_EQUAL: return LESS_EQUAL_LONG;
+                case GREATER: return GREATER_LONG;
+                case GREATER_EQUAL: return GREATER_EQUAL_LONG;
+                case EQUAL_EQUAL: return EQUAL_LONG;
+                case BANG_EQUAL: return NOT_EQUAL_LONG;
+                default: return GENERIC;
+            }
+        }
+        if (left instanceof String && right instanceof String) {
+            switch (operation) {
+                case PLUS: return ADD_STRING;
+                case LESS: return LESS_STRING;
+                case LESS_EQUAL: return LESS_EQUAL_STRING;
+                case GREATER: return GREATER_STRING;
+                case GREATER_EQUAL: return GREATER_EQUAL_STRING;
+                default: return GENERIC;
+            }
+        }
+        if (operation == TokenType.PLUS) {
+            if (left instanceof MerlinListInstance && right instanceof MerlinListInstance) return ADD_LIST;
+            if (left instanceof String) return ADD_STRING;
+        }
+        return GENERIC;
+    }
+
+    static int unary(TokenType operation, Object right) {
+        if (operation == TokenType.MINUS && right instanceof Double) return NEGATE_DOUBLE;
+        if (operation == TokenType.MINUS && right instanceof Long) return NEGATE_LONG;
+        return GENERIC;
+    }
+
+}
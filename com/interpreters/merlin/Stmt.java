@@ -13,6 +13,7 @@ public abstract class Stmt {
 		R visitWHILEStmt(WHILEStmt stmt);
 		R visitFORStmt(FORStmt stmt);
 		R visitRETURNStmt(RETURNStmt stmt);
+		R visitYieldStmt(YieldStmt stmt);
 		R visitForEachStmt(ForEachStmt stmt);
 		R visitVarDeclStmt(VarDeclStmt stmt);
 		R visitFunDeclStmt(FunDeclStmt stmt);
@@ -46,6 +47,8 @@ public abstract class Stmt {
 			return visitor.visitBlockStmt(this);
 		}
 		public final List<Stmt> statements;
+		public int size;
+		public boolean yields;
 	}
 
 
@@ -64,6 +67,7 @@ public abstract class Stmt {
 		public final Expr condition;
 		public final  Stmt thenBranch;
 		public final  Stmt elseBranch;
+		public boolean yields;
 	}
 
 
@@ -80,6 +84,9 @@ public abstract class Stmt {
 		}
 		public final Expr condition;
 		public final  Stmt body;
+		public Expr.FunctionExpr function;
+		public CompiledCode compiled;
+		public boolean yields;
 	}
 
 
@@ -100,6 +107,9 @@ public abstract class Stmt {
 		public final  Expr condition;
 		public final  Expr increment;
 		public final  Stmt body;
+		public Expr.FunctionExpr function;
+		public CompiledCode compiled;
+		public boolean yields;
 	}
 
 
@@ -116,6 +126,23 @@ public abstract class Stmt {
 		}
 		public final Token keyword;
 		public final  Expr value;
+		public boolean tail;
+	}
+
+
+
+	public static class YieldStmt extends Stmt{
+		public YieldStmt(Token keyword, Expr value) {
+			this.keyword = keyword;
+			this.value = value;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitYieldStmt(this);
+		}
+		public final Token keyword;
+		public final  Expr value;
 	}
 
 
@@ -136,6 +163,9 @@ public abstract class Stmt {
 		public final  Token in;
 		public final  Expr iterable;
 		public final  Stmt body;
+		public Expr.FunctionExpr function;
+		public CompiledCode compiled;
+		public boolean yields;
 	}
 
 
@@ -152,6 +182,7 @@ public abstract class Stmt {
 		}
 		public final List<Token> names;
 		public final  List<Expr> initializers;
+		public int[] slots;
 	}
 
 
@@ -168,6 +199,7 @@ public abstract class Stmt {
 		}
 		public final Token name;
 		public final  Expr.FunctionExpr description;
+		public int slot;
 	}
 
 
@@ -186,6 +218,7 @@ public abstract class Stmt {
 		public final Token name;
 		public final  Expr.VariableExpr superclass;
 		public final  List<FunDeclStmt> methods;
+		public int slot;
 	}
 
 
@@ -208,6 +241,7 @@ public abstract class Stmt {
 		public final  Token keyword;
 		public final  Token libname;
 		public final  Token alias;
+		public int slot;
 	}
 
 
@@ -224,6 +258,7 @@ public abstract class Stmt {
 		}
 		public final Token name;
 		public final  List<Token> consts;
+		public int slot;
 	}
 
 
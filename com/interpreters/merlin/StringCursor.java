@@ -0,0 +1,36 @@
+package com.interpreters.merlin;
+
+/// Cursor of a string, each element is a string of one character. A slice of a string is
+/// walked in the string it was taken from, from its first position by its step.
+public final class StringCursor implements MerlinIterator {
+
+    private final String string;
+    private final int step;
+    private int index;
+    private int remaining;
+
+    public StringCursor(String string) {
+        this(string, 0, 1, string.length());
+    }
+
+    public StringCursor(String string, int start, int step, int length) {
+        this.string = string;
+        this.index = start;
+        this.step = step;
+        this.remaining = length;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    @Override
+    public Object next() {
+        char next = string.charAt(index);
+        index += step;
+        --remaining;
+        return Interpreter.character(next);
+    }
+
+}
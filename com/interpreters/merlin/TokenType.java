@@ -3,7 +3,8 @@ package com.interpreters.merlin;
 
 public enum TokenType {
     // single character
-    BANG, MINUS, PLUS, STAR, SLASH, PERCENT,
+    BANG, MINUS, PLUS, STAR, SLASH, PERCENT, BACKSLASH,
+    AMPERSAND, PIPE, CARET, TILDE,
     LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
     COMMA, DOT, SEMICOLON, LESS, GREATER, EQUAL, LEFT_BRACKET, RIGHT_BRACKET,
     COLON, QUESTION,
@@ -11,13 +12,14 @@ public enum TokenType {
     // two-character
     BANG_EQUAL, EQUAL_EQUAL, LESS_EQUAL, GREATER_EQUAL, 
     PLUS_EQUAL, MINUS_EQUAL, SLASH_EQUAL, STAR_EQUAL, PERCENT_EQUAL,
+    LESS_LESS, GREATER_GREATER,
 
     // primary
     NUMBER, STRING, IDENTIFIER,
 
     // keywords
     TRUE, FALSE, NIL, FOR, WHILE, IF, ELSE, DEF, CLASS, AND, OR,
-    RETURN, THIS, SUPER, VAR, IMPORT, AS, IN, FROM, ENUM,
+    RETURN, THIS, SUPER, VAR, IMPORT, AS, IN, FROM, ENUM, YIELD,
 
     /// END OF FILE
     EOF
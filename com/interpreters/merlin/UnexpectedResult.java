@@ -0,0 +1,14 @@
+package com.interpreters.merlin;
+
+/// Thrown when a node evaluated for an unboxed double produces something else.
+/// Carries the boxed result so the caller can continue on the generic path.
+public class UnexpectedResult extends RuntimeException {
+
+    final Object value;
+
+    UnexpectedResult(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+}
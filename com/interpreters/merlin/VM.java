@@ -0,0 +1,656 @@
+package com.interpreters.merlin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.interpreters.merlin.OpCode.*;
+
+/// Stack-based virtual machine executing Chunks produced by the Compiler.
+/// Calls between compiled functions reuse the same dispatch loop, only native
+/// callables that call back into Merlin code start a nested loop.
+public class VM {
+
+    static final class Env {
+        final Object[] slots;
+        final Env enclosing;
+
+        Env(Env enclosing, int size) {
+            this.enclosing = enclosing;
+            this.slots = new Object[size];
+        }
+    }
+
+    private static final class Frame {
+        Chunk chunk;
+        int pc;
+        int base;
+        int slot;
+        Env env;
+        Map<String, Object> globals;
+        MerlinInstance instance;
+        /// the generator a resumed frame belongs to
+        VMGenerator generator;
+    }
+
+    private final Interpreter interpreter;
+
+    private Object[] stack = new Object[1024];
+    private int sp = 0;
+    private Frame[] frames = new Frame[64];
+    private int fp = 0;
+
+    VM(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    public void execute(Chunk script, Map<String, Object> globals) {
+        sp = 0;
+        fp = 0;
+        stack[sp++] = null;
+        pushFrame(script, null, globals, 1, 0, null);
+        run(0);
+    }
+
+    Object invoke(VMFunction function, Object[] arguments) {
+        int slot = sp;
+        ensureStack(slot + 1 + arguments.length);
+        stack[sp++] = function;
+        for (Object argument : arguments) stack[sp++] = argument;
+
+        int exit = fp;
+        enter(function, slot);
+        return run(exit);
+    }
+
+    /// runs a generator's frame from where it was suspended up to its next 'yield' or its end
+    Object resume(VMGenerator generator) {
+        int slot = sp;
+        ensureStack(slot + 1);
+        stack[sp++] = null;
+
+        int exit = fp;
+        pushFrame(generator.chunk, generator.env, generator.globals, slot + 1, slot, null);
+        Frame frame = frames[fp - 1];
+        frame.pc = generator.pc;
+        frame.generator = generator;
+        System.arraycopy(generator.registers, 0, stack, slot + 1, generator.registers.length);
+        return run(exit);
+    }
+
+    private void enter(VMFunction function, int slot) {
+        int base = slot + 1;
+        if (function.chunk.method) {
+            stack[slot] = function.receiver;
+            base = slot;
+        }
+        pushFrame(function.chunk, function.closure, function.globals, base, slot, null);
+    }
+
+    private void pushFrame(Chunk chunk, Env env, Map<String, Object> globals, int base, int slot, MerlinInstance instance) {
+        if (fp == frames.length) frames = Arrays.copyOf(frames, fp * 2);
+        Frame frame = frames[fp];
+        if (frame == null) frame = frames[fp] = new Frame();
+
+        frame.chunk = chunk;
+        frame.pc = 0;
+        frame.base = base;
+        frame.slot = slot;
+        frame.env = env;
+        frame.globals = globals;
+        frame.instance = instance;
+        frame.generator = null;
+        ++fp;
+
+        sp = base + chunk.maxLocals;
+        ensureStack(sp + chunk.maxStack);
+    }
+
+    private void ensureStack(int size) {
+        if (size > stack.length) stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+
+    private Object run(int exit) {
+        Frame frame = frames[fp - 1];
+        Object[] stack = this.stack;
+        int[] code = frame.chunk.code;
+        Object[] constants = frame.chunk.constants;
+        int base = frame.base;
+        int pc = frame.pc;
+        int sp = this.sp;
+
+        while (true) {
+            int start = pc;
+            switch (code[pc++]) {
+                case CONSTANT:
+                    stack[sp++] = constants[code[pc++]];
+                    break;
+                case NIL:
+                    stack[sp++] = null;
+                    break;
+                case TRUE:
+                    stack[sp++] = true;
+                    break;
+                case FALSE:
+                    stack[sp++] = false;
+                    break;
+                case POP:
+                    --sp;
+                    break;
+                case DUP:
+                    stack[sp] = stack[sp - 1];
+                    ++sp;
+                    break;
+                case DUP2:
+                    stack[sp] = stack[sp - 2];
+                    stack[sp + 1] = stack[sp - 1];
+                    sp += 2;
+                    break;
+
+                case GET_LOCAL:
+                    stack[sp++] = stack[base + code[pc++]];
+                    break;
+                case SET_LOCAL:
+                    stack[base + code[pc++]] = stack[sp - 1];
+                    break;
+                case STORE_LOCAL:
+                    stack[base + code[pc++]] = stack[--sp];
+                    break;
+                case GET_ENV: {
+                    Env env = frame.env;
+                    for (int depth = code[pc++]; depth > 0; --depth) env = env.enclosing;
+                    stack[sp++] = env.slots[code[pc++]];
+                    break;
+                }
+                case SET_ENV: {
+                    Env env = frame.env;
+                    for (int depth = code[pc++]; depth > 0; --depth) env = env.enclosing;
+                    env.slots[code[pc++]] = stack[sp - 1];
+                    break;
+                }
+                case GET_GLOBAL:
+                    stack[sp++] = frame.globals.get((String) constants[code[pc++]]);
+                    break;
+
+                case ADD: {
+                    Object right = stack[--sp], left = stack[sp - 1];
+                    if (left instanceof Double && right instanceof Double) stack[sp - 1] = (double) left + (double) right;
+                    else if (left instanceof Long && right instanceof Long) stack[sp - 1] = Interpreter.sum((long) left, (long) right);
+                    else stack[sp - 1] = Interpreter.sum(left, right, frame.chunk.tokens[start]);
+                    break;
+                }
+                case SUBTRACT: {
+                    Object right = stack[--sp], left = stack[sp - 1];
+                    if (left instanceof Double && right instanceof Double) stack[sp - 1] = (double) left - (double) right;
+                    else if (left instanceof Long && right instanceof Long) stack[sp - 1] = Interpreter.subtract((long) left, (long) right);
+                    else stack[sp - 1] = Interpreter.subtract(left, right, frame.chunk.tokens[start]);
+                    break;
+                }
+                case MULTIPLY: {
+                    Object right = stack[--sp], left = stack[sp - 1];
+                    if (left instanceof Double && right instanceof Double) stack[sp - 1] = (double) left * (double) right;
+                    else if (left instanceof Long && right instanceof Long) stack[sp - 1] = Interpreter.multiply((long) left, (long) right);
+                    else stack[sp - 1] = Interpreter.multiply(left, right, frame.chunk.tokens[start]);
+                    break;
+                }
+                case EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Interpreter.equals(stack[sp - 1], right);
+                    break;
+                }
+                case NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Interpreter.equals(stack[sp - 1], right);
+                    break;
+                }
+                case LESS: {
+                    Object right = stack[--sp], left = stack[sp - 1];
+                    if (left instanceof Double && right instanceof Double) stack[sp - 1] = (double) left < (double) right;
+                    else if (left instanceof Long && right instanceof Long) stack[sp - 1] = (long) left < (long) right;
+                    else stack[sp - 1] = Interpreter.less(left, right, frame.chunk.tokens[start]);
+                    break;
+                }
+
+                case JUMP:
+                    pc = code[pc];
+                    break;
+                case JUMP_IF_FALSE: {
+                    int target = code[pc++];
+                    Object condition = stack[--sp];
+                    if (condition != Boolean.TRUE && (condition == Boolean.FALSE || !Interpreter.isTruthy(condition))) pc = target;
+                    break;
+                }
+                case JUMP_IF_LESS:
+                case JUMP_IF_NOT_LESS: {
+                    Object right = stack[--sp], left = stack[--sp];
+                    if (code[pc++] != 0) {
+                        Object swapped = left;
+                        left = right;
+                        right = swapped;
+                    }
+                    int target = code[pc++];
+                    boolean less;
+                    if (left instanceof Long && right instanceof Long) less = (long) left < (long) right;
+                    else if (left instanceof Double && right instanceof Double) less = (double) left < (double) right;
+                    else less = Interpreter.less(left, right, frame.chunk.tokens[start]);
+                    if (less == (code[start] == JUMP_IF_LESS)) pc = target;
+                    break;
+                }
+                case JUMP_IF_TRUE_OR_POP: {
+                    int target = code[pc++];
+                    if (Interpreter.isTruthy(stack[sp - 1])) pc = target;
+                    else --sp;
+                    break;
+                }
+                case JUMP_IF_FALSE_OR_POP: {
+                    int target = code[pc++];
+                    if (!Interpreter.isTruthy(stack[sp - 1])) pc = target;
+                    else --sp;
+                    break;
+                }
+
+                case CHECK_CALL:
+                    checkCall(stack[sp - 1], (Expr.CallExpr) constants[code[pc++]]);
+                    break;
+                case GET_METHOD: {
+                    Object receiver = stack[sp - 1];
+                    Object callee = ((InlineCache) constants[code[pc++]]).callee(receiver);
+                    checkCall(callee, (Expr.CallExpr) constants[code[pc++]]);
+                    stack[sp - 1] = callee;
+                    stack[sp++] = receiver;
+                    break;
+                }
+                case INVOKE: {
+                    int count = code[pc];
+                    int slot = sp - count - 2;
+                    if (stack[slot] instanceof VMFunction && ((VMFunction) stack[slot]).isUnboundMethod()) {
+                        /// the receiver already sits where the method expects 'this'
+                        VMFunction method = (VMFunction) stack[slot];
+                        frame.pc = pc + 1;
+                        this.sp = sp;
+                        pushFrame(method.chunk, method.closure, method.globals, slot + 1, slot, null);
+                        frame = frames[fp - 1];
+                        stack = this.stack;
+                        code = frame.chunk.code;
+                        constants = frame.chunk.constants;
+                        base = frame.base;
+                        pc = 0;
+                        sp = this.sp;
+                        break;
+                    }
+                    if (stack[slot] instanceof NativeMethod) {
+                        Object[] arguments = new Object[count];
+                        System.arraycopy(stack, slot + 2, arguments, 0, count);
+                        frame.pc = pc + 1;
+                        this.sp = sp;
+                        Object result = ((NativeMethod) stack[slot]).call(interpreter, stack[slot + 1], arguments,
+                            frame.chunk.tokens[start]);
+                        stack = this.stack;
+                        stack[slot] = result;
+                        sp = slot + 1;
+                        ++pc;
+                        break;
+                    }
+                    /// anything else is called like CALL does, without the receiver
+                    System.arraycopy(stack, slot + 2, stack, slot + 1, count);
+                    stack[--sp] = null;
+                    frame.pc = ++pc;
+                    this.sp = sp;
+                    if (call(slot, count, frame.chunk.tokens[start])) {
+                        frame = frames[fp - 1];
+                        code = frame.chunk.code;
+                        constants = frame.chunk.constants;
+                        base = frame.base;
+                        pc = 0;
+                    }
+                    stack = this.stack;
+                    sp = this.sp;
+                    break;
+                }
+                case CALL: {
+                    int count = code[pc++];
+                    frame.pc = pc;
+                    this.sp = sp;
+                    if (call(sp - count - 1, count, frame.chunk.tokens[start])) {
+                        frame = frames[fp - 1];
+                        code = frame.chunk.code;
+                        constants = frame.chunk.constants;
+                        base = frame.base;
+                        pc = 0;
+                    }
+                    stack = this.stack;
+                    sp = this.sp;
+                    break;
+                }
+                case RETURN: {
+                    Object result = stack[--sp];
+                    if (frame.instance != null) result = frame.instance;
+                    int slot = frame.slot;
+                    frame.env = null;
+                    frame.instance = null;
+                    if (--fp == exit) {
+                        this.sp = slot;
+                        return result;
+                    }
+                    frame = frames[fp - 1];
+                    code = frame.chunk.code;
+                    constants = frame.chunk.constants;
+                    base = frame.base;
+                    pc = frame.pc;
+                    sp = slot;
+                    stack[sp++] = result;
+                    break;
+                }
+                case GENERATOR:
+                    stack[sp++] = new VMGenerator(frame.chunk.tokens[start], frame.chunk, frame.env, frame.globals,
+                        Arrays.copyOfRange(stack, base, base + frame.chunk.maxLocals), pc + 1, this);
+                    break;
+                case YIELD: {
+                    /// the registers go back into the generator's own array, the resumed frame
+                    /// is always the one its dispatch loop was started for
+                    Object value = stack[--sp];
+                    VMGenerator generator = frame.generator;
+                    System.arraycopy(stack, base, generator.registers, 0, generator.registers.length);
+                    generator.env = frame.env;
+                    generator.pc = pc;
+                    generator.suspended = true;
+                    frame.env = null;
+                    frame.generator = null;
+                    --fp;
+                    this.sp = frame.slot;
+                    return value;
+                }
+
+                case GET_PROPERTY:
+                    stack[sp - 1] = ((InlineCache) constants[code[pc++]]).get(stack[sp - 1]);
+                    break;
+                case CHECK_INSTANCE:
+                    if (!(stack[sp - 1] instanceof MerlinInstance))
+                        throw new RuntimeError(frame.chunk.tokens[start], "Only instances have properties.");
+                    break;
+                case SET_PROPERTY: {
+                    Object value = stack[--sp];
+                    ((MerlinInstance) stack[sp - 1]).set((InlineCache) constants[code[pc++]], value);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case CHECK_LIST:
+                    if (!(stack[sp - 1] instanceof MerlinListInstance))
+                        throw new RuntimeError(frame.chunk.tokens[start], "Can't take index from non-list object.");
+                    break;
+                case CHECK_INDEXABLE:
+                    if (!Interpreter.indexable(stack[sp - 1]))
+                        throw new RuntimeError(frame.chunk.tokens[start], "Can't take index from non-list object.");
+                    break;
+                case GET_INDEX: {
+                    Object index = stack[--sp], object = stack[sp - 1];
+                    if (object instanceof MerlinListInstance) {
+                        stack[sp - 1] = ((MerlinListInstance) object).get(index, frame.chunk.tokens[start]);
+                    }
+                    else if (Interpreter.indexable(object)) stack[sp - 1] = Interpreter.index(object, index, frame.chunk.tokens[start]);
+                    else throw new RuntimeError(frame.chunk.tokens[start], "Can't take index from non-list object.");
+                    break;
+                }
+                case SET_INDEX: {
+                    Object value = stack[--sp], index = stack[--sp];
+                    ((MerlinListInstance) stack[sp - 1]).set(index, value, frame.chunk.tokens[start]);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case APPEND:
+                    ((MerlinListInstance) stack[base + code[pc++]]).append(stack[--sp]);
+                    break;
+
+                case ITER_NEXT: {
+                    MerlinIterator cursor = (MerlinIterator) stack[base + code[pc++]];
+                    int target = code[pc++], local = code[pc++];
+                    if (!Interpreter.hasNext(cursor)) pc = target;
+                    else if (local >= 0) stack[base + local] = Interpreter.next(cursor);
+                    else stack[sp++] = Interpreter.next(cursor);
+                    break;
+                }
+
+                case SUPER_CALL: {
+                    int count = code[pc++];
+                    int slot = sp - count - 2;
+                    MerlinFunction constructor = ((MerlinClass) stack[slot]).getConstructor();
+                    frame.pc = pc;
+                    this.sp = sp;
+                    if (constructor instanceof VMFunction) {
+                        VMFunction init = (VMFunction) constructor;
+                        pushFrame(init.chunk, init.closure, init.globals, slot + 1, slot, null);
+                        frame = frames[fp - 1];
+                        stack = this.stack;
+                        code = frame.chunk.code;
+                        constants = frame.chunk.constants;
+                        base = frame.base;
+                        pc = 0;
+                        sp = this.sp;
+                        break;
+                    }
+                    MerlinCallable bound = constructor.bind("this", stack[slot + 1]);
+                    callNative(bound, slot + 1, count, frame.chunk.tokens[start]);
+                    stack = this.stack;
+                    stack[slot] = null;
+                    sp = slot + 1;
+                    break;
+                }
+
+                default:
+                    frame.pc = start;
+                    this.sp = sp;
+                    rare(frame);
+                    stack = this.stack;
+                    pc = frame.pc;
+                    sp = this.sp;
+                    break;
+            }
+        }
+    }
+
+    /// the instructions seldom found in a hot loop run one at a time outside the dispatch
+    /// loop, which keeps that loop small enough for the JVM to compile it quickly
+    private void rare(Frame frame) {
+        Object[] stack = this.stack;
+        int[] code = frame.chunk.code;
+        Object[] constants = frame.chunk.constants;
+        int start = frame.pc;
+        int pc = start;
+        int sp = this.sp;
+
+        switch (code[pc++]) {
+            case SET_GLOBAL:
+                frame.globals.put((String) constants[code[pc++]], stack[sp - 1]);
+                break;
+            case DEFINE_GLOBAL:
+                frame.globals.put((String) constants[code[pc++]], stack[--sp]);
+                break;
+            case PUSH_ENV:
+                frame.env = new Env(frame.env, code[pc++]);
+                break;
+            case POP_ENV:
+                frame.env = frame.env.enclosing;
+                break;
+            case DIVIDE: {
+                Object right = stack[--sp];
+                stack[sp - 1] = Interpreter.divide(stack[sp - 1], right, frame.chunk.tokens[start]);
+                break;
+            }
+            case MODULO: {
+                Object right = stack[--sp];
+                stack[sp - 1] = Interpreter.modulo(stack[sp - 1], right, frame.chunk.tokens[start]);
+                break;
+            }
+            case INTEGER_DIVIDE: {
+                Object right = stack[--sp];
+                stack[sp - 1] = Interpreter.integerDivide(stack[sp - 1], right, frame.chunk.tokens[start]);
+                break;
+            }
+            case BITWISE: {
+                Object right = stack[--sp];
+                stack[sp - 1] = Interpreter.bitwise(stack[sp - 1], right, frame.chunk.tokens[start]);
+                break;
+            }
+            case NEGATE:
+                stack[sp - 1] = Interpreter.negate(stack[sp - 1], frame.chunk.tokens[start]);
+                break;
+            case COMPLEMENT:
+                stack[sp - 1] = Interpreter.complement(stack[sp - 1], frame.chunk.tokens[start]);
+                break;
+            case NOT:
+                stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                break;
+            case LESS_EQUAL: {
+                Object right = stack[--sp];
+                stack[sp - 1] = !Interpreter.less(right, stack[sp - 1], frame.chunk.tokens[start]);
+                break;
+            }
+            case GREATER: {
+                Object right = stack[--sp];
+                stack[sp - 1] = Interpreter.less(right, stack[sp - 1], frame.chunk.tokens[start]);
+                break;
+            }
+            case GREATER_EQUAL: {
+                Object right = stack[--sp];
+                stack[sp - 1] = !Interpreter.less(stack[sp - 1], right, frame.chunk.tokens[start]);
+                break;
+            }
+            case CLOSURE: {
+                Chunk chunk = (Chunk) constants[code[pc++]];
+                stack[sp++] = new VMFunction(chunk.name, chunk, frame.env, frame.globals, null, this);
+                break;
+            }
+            case SLICE: {
+                Object step = stack[--sp], end = stack[--sp], begin = stack[--sp];
+                stack[sp - 1] = Interpreter.slice(stack[sp - 1], begin, end, step, frame.chunk.tokens[start]);
+                break;
+            }
+            case LIST: {
+                int count = code[pc++];
+                List<Object> elements = new ArrayList<>(count);
+                for (int i = sp - count; i < sp; ++i) elements.add(stack[i]);
+                sp -= count;
+                stack[sp++] = new MerlinListInstance(elements);
+                break;
+            }
+            case ITER_INIT:
+                if (!(stack[sp - 1] instanceof MerlinIterable)) {
+                    throw new RuntimeError(frame.chunk.tokens[start], code[pc] == 0
+                        ? "Expression after 'in' must be iterable."
+                        : "Expression after 'in' must be iterable in list comprehension.");
+                }
+                stack[sp - 1] = ((MerlinIterable) stack[sp - 1]).iterator();
+                ++pc;
+                break;
+            case CHECK_SUPERCLASS:
+                if (!(stack[sp - 1] instanceof MerlinClass))
+                    throw new RuntimeError(frame.chunk.tokens[start], "Superclass must be class.");
+                break;
+            case CLASS: {
+                Chunk.ClassInfo info = (Chunk.ClassInfo) constants[code[pc++]];
+                sp -= info.methods.size();
+                stack[sp - 1] = makeClass(info, stack, sp);
+                break;
+            }
+            case SUPER_GET: {
+                Object instance = stack[--sp];
+                MerlinClass superclass = (MerlinClass) stack[sp - 1];
+                stack[sp - 1] = superclass.findMethod((Token) constants[code[pc++]]).bind("this", instance);
+                break;
+            }
+            case SUPER_CHECK: {
+                int count = code[pc++], target = code[pc++];
+                MerlinFunction constructor = ((MerlinClass) stack[sp - 1]).getConstructor();
+                if (constructor == null) {
+                    stack[sp - 1] = null;
+                    pc = target;
+                }
+                else if (constructor.arity() != count) {
+                    throw new RuntimeError(frame.chunk.tokens[start],
+                        "Expected " + constructor.arity() + " arguments but got " + count + ".");
+                }
+                break;
+            }
+            case ENUM: {
+                @SuppressWarnings("unchecked")
+                List<Token> consts = (List<Token>) constants[code[pc++]];
+                stack[sp++] = new MerlinEnum(consts);
+                break;
+            }
+            case IMPORT:
+                frame.pc = pc;
+                this.sp = sp;
+                stack[sp++] = interpreter.importLib((Stmt.ImportStmt) constants[code[pc++]]);
+                break;
+            default:
+                throw new IllegalStateException("Unknown opcode " + code[start] + " in " + frame.chunk);
+        }
+        frame.pc = pc;
+        this.sp = sp;
+    }
+
+    private static void checkCall(Object object, Expr.CallExpr call) {
+        if (!(object instanceof MerlinCallable)) {
+            throw new RuntimeError(call.paren,
+                "The call operator can only be used on function and class objects");
+        }
+
+        MerlinCallable.checkArity(call, (MerlinCallable) object);
+    }
+
+    /// calls the callee at 'slot' with the arguments above it, true when that pushed a frame to
+    /// run next; a callee run right away leaves its result at 'slot' instead
+    private boolean call(int slot, int count, Token paren) {
+        Object callee = stack[slot];
+        if (callee instanceof VMFunction) {
+            enter((VMFunction) callee, slot);
+            return true;
+        }
+        if (construct(callee, slot)) return true;
+        Object result = callNative((MerlinCallable) callee, slot, count, paren);
+        stack[slot] = result;
+        sp = slot + 1;
+        return false;
+    }
+
+    /// pushes a frame for a class whose constructor is compiled, the frame returns the new instance
+    private boolean construct(Object callee, int slot) {
+        if (!(callee instanceof MerlinClass)) return false;
+        MerlinClass klass = (MerlinClass) callee;
+        if (!(klass.getConstructor() instanceof VMFunction)) return false;
+
+        VMFunction init = (VMFunction) klass.getConstructor();
+        MerlinInstance instance = new MerlinInstance(klass, klass.fieldCount());
+        stack[slot] = instance;
+        pushFrame(init.chunk, init.closure, init.globals, slot, slot, instance);
+        return true;
+    }
+
+    private Object callNative(MerlinCallable callee, int slot, int count, Token paren) {
+        Object[] stack = this.stack;
+        switch (count) {
+            case 0: return callee.call0(interpreter, paren);
+            case 1: return callee.call1(interpreter, stack[slot + 1], paren);
+            case 2: return callee.call2(interpreter, stack[slot + 1], stack[slot + 2], paren);
+            case 3: return callee.call3(interpreter, stack[slot + 1], stack[slot + 2], stack[slot + 3], paren);
+            default:
+                Object[] arguments = new Object[count];
+                System.arraycopy(stack, slot + 1, arguments, 0, count);
+                return callee.call(interpreter, arguments, paren);
+        }
+    }
+
+    private static MerlinClass makeClass(Chunk.ClassInfo info, Object[] stack, int top) {
+        Map<String, MerlinFunction> methods = new HashMap<>();
+        MerlinFunction constructor = null;
+        for (int i = 0, end = info.methods.size(); i < end; ++i) {
+            MerlinFunction method = (MerlinFunction) stack[top + i];
+            if (i == info.constructor) constructor = method;
+            else methods.put(info.methods.get(i), method);
+        }
+        return new MerlinClass(info.name, (MerlinClass) stack[top - 1], methods, constructor);
+    }
+
+}
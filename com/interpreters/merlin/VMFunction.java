@@ -0,0 +1,48 @@
+package com.interpreters.merlin;
+
+import java.util.List;
+import java.util.Map;
+
+public class VMFunction extends MerlinFunction {
+
+    final Chunk chunk;
+    final VM.Env closure;
+    final Map<String, Object> globals;
+    final Object receiver;
+    private final VM vm;
+
+    VMFunction(String name, Chunk chunk, VM.Env closure, Map<String, Object> globals, Object receiver, VM vm) {
+        super(name, chunk.description, null);
+        this.chunk = chunk;
+        this.closure = closure;
+        this.globals = globals;
+        this.receiver = receiver;
+        this.vm = vm;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        return vm.invoke(this, arguments.toArray());
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments, Token paren) {
+        return vm.invoke(this, arguments);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object receiver, Object[] arguments) {
+        return vm.invoke((VMFunction) bind(null, receiver), arguments);
+    }
+
+    @Override
+    public boolean isUnboundMethod() {
+        return receiver == null && chunk.method;
+    }
+
+    @Override
+    public MerlinFunction bind(String name, Object value) {
+        return new VMFunction(name, chunk, closure, globals, value, vm);
+    }
+
+}
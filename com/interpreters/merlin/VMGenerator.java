@@ -0,0 +1,36 @@
+package com.interpreters.merlin;
+
+import java.util.Map;
+
+/// Generator of a function run by the VM. A 'yield' leaves the function's frame like a
+/// 'return' does, after saving its environment, registers and pc here; the next element
+/// pushes the frame again with what was saved and continues the dispatch loop from there.
+final class VMGenerator extends MerlinGenerator {
+
+    final Chunk chunk;
+    final Map<String, Object> globals;
+    final Object[] registers;
+    VM.Env env;
+    int pc;
+    /// set by a 'yield', a frame that returns without it has completed the body
+    boolean suspended = false;
+    private final VM vm;
+
+    VMGenerator(Token paren, Chunk chunk, VM.Env env, Map<String, Object> globals, Object[] registers, int pc, VM vm) {
+        super(chunk.name, paren);
+        this.chunk = chunk;
+        this.env = env;
+        this.globals = globals;
+        this.registers = registers;
+        this.pc = pc;
+        this.vm = vm;
+    }
+
+    @Override
+    Object advance() {
+        suspended = false;
+        Object value = vm.resume(this);
+        return suspended ? value : COMPLETED;
+    }
+
+}
@@ -1,11 +1,12 @@
 package com.interpreters.merlin.nativeFunctions;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.interpreters.merlin.Interpreter;
 import com.interpreters.merlin.MerlinCallable;
+import com.interpreters.merlin.MerlinIterable;
+import com.interpreters.merlin.MerlinIterator;
 import com.interpreters.merlin.MerlinListInstance;
 import com.interpreters.merlin.RuntimeError;
 import com.interpreters.merlin.Token;
@@ -26,14 +27,14 @@ public class Filter implements MerlinCallable {
         if (callback.arity() != 1) 
             throw new RuntimeError(paren, "Callback must take exactly 1 argument");
         
-        if (!(arguments.get(1) instanceof MerlinListInstance)) 
-            throw new RuntimeError(paren, "Second argument must be MerlinListInstance.");
+        if (!(arguments.get(1) instanceof MerlinIterable)) 
+            throw new RuntimeError(paren, "Second argument must be MerlinIterable.");
         
-        MerlinListInstance lst = (MerlinListInstance) arguments.get(1);
+        MerlinIterator cursor = ((MerlinIterable) arguments.get(1)).iterator();
         
         List<Object> resultList = new ArrayList<>();
-        for (Object arg : lst.getList()) 
-            resultList.add(callback.call(interpreter, Arrays.asList(arg), paren));
+        while (cursor.hasNext()) 
+            resultList.add(callback.call1(interpreter, cursor.next(), paren));
         
         return new MerlinListInstance(resultList);
     }
@@ -16,11 +16,16 @@ public class Int implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        Object obj = arguments.get(0);
-        if (obj instanceof Double) return Math.floor(((double) obj));
+        return call1(interpreter, arguments.get(0), paren);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object obj, Token paren) {
+        if (obj instanceof Long) return obj;
+        if (obj instanceof Double) return Interpreter.box((long) Math.floor(((double) obj)));
         if (obj instanceof String) {
             try {
-                return Math.floor(Double.parseDouble((String)obj));
+                return Interpreter.box((long) Math.floor(Double.parseDouble((String)obj)));
             }
             catch(NumberFormatException exception) {}
         }
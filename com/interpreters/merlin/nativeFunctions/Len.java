@@ -4,6 +4,8 @@ import java.util.List;
 
 import com.interpreters.merlin.Interpreter;
 import com.interpreters.merlin.MerlinCallable;
+import com.interpreters.merlin.MerlinIterable;
+import com.interpreters.merlin.MerlinIterator;
 import com.interpreters.merlin.MerlinLenable;
 import com.interpreters.merlin.RuntimeError;
 import com.interpreters.merlin.Token;
@@ -18,10 +20,21 @@ public class Len implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        Object obj = arguments.get(0);
-        if (obj instanceof MerlinLenable) return ((MerlinLenable) obj).size() * 1.0;
-        if (obj instanceof String) return ((String) obj).length() * 1.0;
-        
+        return call1(interpreter, arguments.get(0), paren);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object obj, Token paren) {
+        if (obj instanceof MerlinLenable) return Interpreter.box(((MerlinLenable) obj).size());
+        if (obj instanceof String) return Interpreter.box(((String) obj).length());
+        /// anything else is counted by walking it, which uses up a generator
+        if (obj instanceof MerlinIterable) {
+            MerlinIterator cursor = ((MerlinIterable) obj).iterator();
+            long count = 0;
+            for (; cursor.hasNext(); cursor.next()) ++count;
+            return Interpreter.box(count);
+        }
+
         throw new RuntimeError(paren,"object type has no len()");
     }
     
@@ -16,8 +16,13 @@ public class MDouble implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        Object arg = arguments.get(0);
+        return call1(interpreter, arguments.get(0), paren);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object arg, Token paren) {
         if (arg instanceof Double) return (double) arg;
+        if (arg instanceof Long) return (double) (long) arg;
         try {
             return Double.parseDouble(arg.toString());
         }
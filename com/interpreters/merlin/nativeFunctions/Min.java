@@ -1,11 +1,11 @@
 package com.interpreters.merlin.nativeFunctions;
 
-import java.util.Arrays;
 import java.util.List;
 
 import com.interpreters.merlin.Interpreter;
 import com.interpreters.merlin.MerlinCallable;
 import com.interpreters.merlin.MerlinIterable;
+import com.interpreters.merlin.MerlinIterator;
 import com.interpreters.merlin.RuntimeError;
 import com.interpreters.merlin.Token;
 
@@ -21,36 +21,35 @@ public class Min implements MerlinCallable{
         if (!(arguments.get(0) instanceof MerlinIterable)) 
             throw new RuntimeError(paren, "First argument must be MerlinIterable.");
         
-        MerlinIterable iterable = (MerlinIterable) arguments.get(0);
-        if (arguments.size() == 1) return defaultComparator(iterable, paren);
+        MerlinIterator cursor = ((MerlinIterable) arguments.get(0)).iterator();
+        if (arguments.size() == 1) return defaultComparator(cursor, paren);
         if (!(arguments.get(1) instanceof MerlinCallable))
             throw new RuntimeError(paren, "Comparator(second argument) must be MerlinCallable.");
         
         MerlinCallable comparator = (MerlinCallable) arguments.get(1);
-        return Comparator(interpreter, iterable, comparator, paren);
+        return Comparator(interpreter, cursor, comparator, paren);
     }
 
-    private Object defaultComparator(MerlinIterable iterable, Token paren) {
+    private Object defaultComparator(MerlinIterator cursor, Token paren) {
         boolean flag = false;
         Object min = null;
-        for (; !iterable.isAtEnd();) {
-            Object current = iterable.next();
+        while (cursor.hasNext()) {
+            Object current = cursor.next();
             if (!flag || Interpreter.less(current, min, paren)) {
                 min = current;
                 flag = true;
             }
         }
-        iterable.reset();
         return min;
     }
 
-    private Object Comparator(Interpreter interpreter, MerlinIterable iterable, MerlinCallable comparator, Token paren) {
+    private Object Comparator(Interpreter interpreter, MerlinIterator cursor, MerlinCallable comparator, Token paren) {
         boolean flag = false;
         Object min = null;
-        for (; !iterable.isAtEnd();) {
-            Object current = iterable.next();
+        while (cursor.hasNext()) {
+            Object current = cursor.next();
             try {
-                if (!flag || (boolean) comparator.call(interpreter, Arrays.asList(current, min), paren)) {
+                if (!flag || (boolean) comparator.call2(interpreter, current, min, paren)) {
                     min = current;
                     flag = true;
                 }
@@ -59,7 +58,6 @@ public class Min implements MerlinCallable{
                 throw new RuntimeError(paren, "Comparator must return 'boolean'.");
             }
         }
-        iterable.reset();
         return min;
     }
     
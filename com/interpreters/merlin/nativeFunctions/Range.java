@@ -1,20 +1,18 @@
 package com.interpreters.merlin.nativeFunctions;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import com.interpreters.merlin.Interpreter;
 import com.interpreters.merlin.MerlinCallable;
-import com.interpreters.merlin.MerlinLib;
 import com.interpreters.merlin.MerlinListInstance;
+import com.interpreters.merlin.RangeList;
 import com.interpreters.merlin.RuntimeError;
 import com.interpreters.merlin.Token;
-import com.interpreters.merlin.TokenType;
 
+/// range(end), range(start, end) and range(start, end, step); the list it returns computes
+/// its elements on access and only becomes a real list when it is changed
 public class Range implements MerlinCallable {
 
-    private Token paren;
-
     @Override
     public int arity() {
         return -3;
@@ -22,44 +20,64 @@ public class Range implements MerlinCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-        this.paren = paren;
-        List<Integer> lst = new ArrayList<>();
-        for (int i = 0; i < arguments.size(); ++i) {
-            checkInt(arguments.get(i), i);
-            int value = (int)((double) arguments.get(i));
-            lst.add(value);
+        switch (arguments.size()) {
+            case 1:
+                return call1(interpreter, arguments.get(0), paren);
+            case 2:
+                return call2(interpreter, arguments.get(0), arguments.get(1), paren);
+            case 3:
+                return call3(interpreter, arguments.get(0), arguments.get(1), arguments.get(2), paren);
         }
 
-        switch (lst.size()) {
+        throw new RuntimeError(paren,"Must be at least 1 argument.");
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object end, Token paren) {
+        return new MerlinListInstance(values(0, toLong(end, 0, paren), 1, paren));
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object start, Object end, Token paren) {
+        return new MerlinListInstance(values(toLong(start, 0, paren), toLong(end, 1, paren), 1, paren));
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object start, Object end, Object step, Token paren) {
+        return new MerlinListInstance(
+            values(toLong(start, 0, paren), toLong(end, 1, paren), toLong(step, 2, paren), paren));
+    }
+
+    /// the elements of a call with these arguments without the list instance around them,
+    /// a counted loop walks them on its own
+    public RangeList values(Object[] arguments, Token paren) {
+        switch (arguments.length) {
             case 1:
-                return range(0, lst.get(0), 1);
+                return values(0, toLong(arguments[0], 0, paren), 1, paren);
             case 2:
-                return range(lst.get(0), lst.get(1), 1);
+                return values(toLong(arguments[0], 0, paren), toLong(arguments[1], 1, paren), 1, paren);
             case 3:
-                return range(lst.get(0), lst.get(1), lst.get(2));
+                return values(toLong(arguments[0], 0, paren), toLong(arguments[1], 1, paren),
+                    toLong(arguments[2], 2, paren), paren);
         }
 
         throw new RuntimeError(paren,"Must be at least 1 argument.");
     }
 
-    private MerlinListInstance range(int start, int end, int step) {
+    private RangeList values(long start, long end, long step, Token paren) {
         if (step == 0) throw new RuntimeError(paren,
             "argument 3 must not be 0.");
-        
-        List<Object> res = new ArrayList<>();
-        if (step > 0) {
-            for (int i = start; i < end; i += step) res.add(i * 1.0);
-        }
-        else {
-            for (int i = start; i > end; i += step) res.add(i * 1.0);
-        }
 
-        return new MerlinListInstance(res);
+        long size = RangeList.size(start, end, step);
+        if (size < 0) throw new RuntimeError(paren, "Range is too large.");
+
+        return new RangeList(start, step, (int) size);
     }
 
-    private void checkInt(Object obj, int index) {
-        if (!(obj instanceof Double) || (((double)obj) % 1 != 0)) 
+    private long toLong(Object obj, int index, Token paren) {
+        if (!Interpreter.isInteger(obj))
             throw new RuntimeError(paren, "Argument must be an integer: position " + index + ".");
+        return obj instanceof Long ? (long) obj : (long) (double) obj;
     }
-    
+
 }
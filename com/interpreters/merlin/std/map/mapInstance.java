@@ -18,10 +18,12 @@ import com.interpreters.merlin.Token;
 
 public class mapInstance extends MerlinInstance {
 
+    private static final MerlinClass CLASS = new MerlinClass("Map", null, new HashMap<>(), null);
+
     private Map<String, Object> map = new HashMap<>();
 
     public mapInstance() {
-        super(new MerlinClass("Map", null, new HashMap<>(), null));
+        super(CLASS);
         initMethods();
     }
 
@@ -117,7 +119,7 @@ public class mapInstance extends MerlinInstance {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            return map.size() * 1.0;
+            return Interpreter.box(map.size());
         }
 
     }
@@ -12,8 +12,10 @@ import com.interpreters.merlin.Token;
 
 public class osInstance extends MerlinInstance {
 
+    private static final MerlinClass CLASS = new MerlinClass("Os", null, new HashMap<>(), null);
+
     public osInstance() {
-        super(new MerlinClass("Os", null, new HashMap<>(), null));
+        super(CLASS);
         initMethods();
     }
     
@@ -63,10 +65,10 @@ public class osInstance extends MerlinInstance {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            if (!(arguments.get(0) instanceof Double)) 
+            if (!Interpreter.isInteger(arguments.get(0))) 
                 throw new RuntimeError(paren, "Argument must be integer number.");
 
-            int time = (int) ((double)arguments.get(0));
+            int time = Interpreter.toInt(arguments.get(0));
             try {
                 Thread.sleep(time);
             } catch (InterruptedException e) {
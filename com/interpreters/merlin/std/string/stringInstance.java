@@ -4,200 +4,269 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.interpreters.merlin.Interpreter;
-import com.interpreters.merlin.MerlinCallable;
 import com.interpreters.merlin.MerlinClass;
 import com.interpreters.merlin.MerlinInstance;
 import com.interpreters.merlin.MerlinIterable;
+import com.interpreters.merlin.MerlinIterator;
 import com.interpreters.merlin.MerlinLenable;
 import com.interpreters.merlin.MerlinListInstance;
+import com.interpreters.merlin.NativeMethod;
 import com.interpreters.merlin.RuntimeError;
+import com.interpreters.merlin.Slice;
+import com.interpreters.merlin.StringCursor;
 import com.interpreters.merlin.Token;
 
 public class stringInstance extends MerlinInstance implements MerlinIterable, MerlinLenable{
 
-    private int current;
-    private final String str;
+    /// all strings share one class and its table of methods, a string itself only holds its
+    /// characters
+    private static final Map<String, NativeMethod> METHODS = new HashMap<>();
+    private static final MerlinClass CLASS = new MerlinClass("String", METHODS);
+
+    static {
+        method(new length());
+        method(new getAt());
+        method(new substring());
+        method(new reverse());
+        method(new split());
+        method(new _str());
+    }
+
+    private static void method(NativeMethod method) {
+        METHODS.put(method.getName(), method);
+    }
+
+    /// the characters are source[start], source[start + step], ...: a slice reads the string
+    /// it was taken from, and the string of its own is only built when it's needed as a whole
+    private final String source;
+    private final int start;
+    private final int step;
+    private final int length;
+    private String str;
 
     public stringInstance(String str) {
-        super(new MerlinClass("String", null, new HashMap<>(), null));
+        this(str, 0, 1, str.length());
         this.str = str;
-        initMethods();
     }
-        
+
+    private stringInstance(String source, int start, int step, int length) {
+        super(CLASS);
+        this.source = source;
+        this.start = start;
+        this.step = step;
+        this.length = length;
+    }
 
     public int length() {
-        return str.length();
+        return length;
+    }
+
+    private char charAt(int index) {
+        return source.charAt(start + index * step);
     }
 
     @Override
     public String toString() {
+        if (str == null) {
+            if (step == 1) str = source.substring(start, start + length);
+            else {
+                StringBuilder builder = new StringBuilder(length);
+                for (int i = 0; i < length; ++i) builder.append(charAt(i));
+                str = builder.toString();
+            }
+        }
         return str;
     }
 
-    @Override
-    public Object next() {
-        return str.charAt(current++) + "";
+    private boolean hasSurrogates() {
+        for (int i = 0; i < length; ++i) if (Character.isSurrogate(charAt(i))) return true;
+        return false;
     }
 
-
     @Override
-    public boolean isAtEnd() {
-        return current == str.length();
+    public MerlinIterator iterator() {
+        return new StringCursor(source, start, step, length);
     }
 
 
     @Override
-    public void reset() {
-        current = 0;
+    public int size() {
+        return length;
     }
 
-
-    @Override
-    public int size() {
-        return str.length();
+    /// 'str[start:end:step]', a view of the characters that reads the same string; a slice
+    /// going backwards is taken forwards and reversed like reverse() does, so that it keeps
+    /// surrogate pairs intact the same way
+    public stringInstance slice(Slice slice) {
+        stringInstance view = new stringInstance(source, start + slice.start * step, step * slice.step, slice.size);
+        if (slice.step < 0 && view.hasSurrogates()) return view.backwards().reversed();
+        return view;
     }
 
+    /// the same characters read from the last one back
+    private stringInstance backwards() {
+        return new stringInstance(source, start + (length - 1) * step, -step, length);
+    }
 
-    private void initMethods() {
-        set("length", new length());
-        set("getAt", new getAt());
-        set("substring", new substring());
-        set("reverse", new reverse());
-        set("split", new split());
-        set("_str", str);
+    /// reading backwards would swap the halves of a surrogate pair, so a string with one is
+    /// reversed by StringBuilder instead
+    private stringInstance reversed() {
+        if (hasSurrogates()) return new stringInstance(new StringBuilder(toString()).reverse().toString());
+        return backwards();
     }
 
-    class length implements MerlinCallable {
+    public static String slice(String str, Slice slice) {
+        return new stringInstance(str).slice(slice).toString();
+    }
 
-        @Override
-        public int arity() {
-            return 0;
+    /// 'str[index]' and getAt(index): an integer index in range reads the character directly,
+    /// a list of indexes gives the list of their characters
+    public static Object get(String str, Object index, Token bracket) {
+        if (index instanceof Long) {
+            long i = (long) index;
+            int length = str.length();
+            if (i < 0) i += length;
+            if (i >= 0 && i < length) return Interpreter.character(str.charAt((int) i));
         }
+        return new stringInstance(str).get(index, bracket);
+    }
 
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            return length();
+    public Object get(Object index, Token bracket) {
+        if (index instanceof Long) {
+            long i = (long) index;
+            if (i < 0) i += length;
+            if (i >= 0 && i < length) return Interpreter.character(charAt((int) i));
         }
+        if (Interpreter.isInteger(index)) return getIndex(Interpreter.toInt(index), bracket);
+        if (index instanceof MerlinListInstance) return getList((MerlinListInstance) index, bracket);
+        if (index instanceof Double) throw new RuntimeError(bracket, "Index must be an integer.");
 
+        throw new RuntimeError(bracket, "Index must be an integer or List.");
     }
 
-    class getAt implements MerlinCallable {
-
-        private Token paren;
+    private String getIndex(int index, Token bracket) {
+        if (index >= length) throw new RuntimeError(bracket, "String index out of range: index is too big.");
+        if (index < 0 && length != 0) index = (index + length) % length;
+        if (index < 0) throw new RuntimeError(bracket, "String index out of range: index is very negative.");
+        return Interpreter.character(charAt(index));
+    }
 
-        @Override
-        public int arity() {
-            return 1;
+    private Object getList(MerlinListInstance indexes, Token bracket) {
+        List<Object> lst = new ArrayList<>();
+        int i = 0;
+        for (Object obj : indexes.getList()) {
+            if (!Interpreter.isInteger(obj)) throw new RuntimeError(bracket, "The list argument(position " + i + " in the list) must be an integer.");
+            lst.add(getIndex(Interpreter.toInt(obj), bracket));
+            i += 1;
         }
+        return new MerlinListInstance(lst);
+    }
 
-        @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            this.paren = paren;
-            Object index = arguments.get(0);
+    /// the methods get the string they are called on as the receiver
 
-            if (index instanceof Double) return getDouble((double) index);
-            if (index instanceof MerlinListInstance) return getList((MerlinListInstance) index);
+    static class length extends NativeMethod {
 
-            throw new RuntimeError(paren, "Index must be an integer or List.");
+        length() {
+            super("length", 0);
         }
 
-        private Object getDouble(double n) {
-            if (n % 1 != 0) throw new RuntimeError(paren, "Index must be an integer.");
-            int index = (int)n;
-            return getIndex(index);
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return Interpreter.box(((stringInstance) receiver).length);
         }
 
-        private Object getIndex(int index) {
-            if (index >= length()) throw new RuntimeError(paren, "String index out of range: index is too big.");
-            if (index < 0 && length() != 0) index = (index + length()) % length();
-            if (index < 0) throw new RuntimeError(paren, "String index out of range: index is very negative.");
-            return str.charAt(index) + "";
-        }
+    }
 
-        private Object getList(MerlinListInstance indexes) {
-            List<Object> lst = new ArrayList<>();
-            int i = 0;
-            for (Object obj : indexes.getList()) {
-                if (!checkInt(obj)) throw new RuntimeError(paren, "The list argument(position " + i + " in the list) must be an integer.");
-                lst.add(getIndex((int)((double)obj)));
-                i += 1;
-            }
-            return new MerlinListInstance(lst);
+    static class getAt extends NativeMethod {
+
+        getAt() {
+            super("getAt", 1);
         }
-    
-        private boolean checkInt(Object obj) {
-            if (!(obj instanceof Double)) return false;
-            double n = (double) obj;
-            if (n % 1 != 0) return false;
-            return true;
+
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return ((stringInstance) receiver).get(arguments[0], paren);
         }
 
     }
 
-    class substring implements MerlinCallable {
+    static class substring extends NativeMethod {
 
-        @Override
-        public int arity() {
-            return 2;
+        substring() {
+            super("substring", 2);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            Object arg1 = arguments.get(0), arg2 = arguments.get(1);
-            if (!checkInt(arg1) || !checkInt(arg2)) throw new RuntimeError(paren, "Indexes must be numbers.");
-            int start = (int)((double)arg1), end = (int)((double)arg2);
-            if (start >= length()) throw new RuntimeError(paren, "String index out of range: start index is too big.");
-            if (end > length()) throw new RuntimeError(paren, "String index out of range: end index is too big.");
-            start = (start + length()) % length();
-            if (end != length()) end = (end + length()) % length();
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            stringInstance string = (stringInstance) receiver;
+            int length = string.length;
+            Object arg1 = arguments[0], arg2 = arguments[1];
+            if (!Interpreter.isInteger(arg1) || !Interpreter.isInteger(arg2)) throw new RuntimeError(paren, "Indexes must be numbers.");
+            int start = Interpreter.toInt(arg1), end = Interpreter.toInt(arg2);
+            if (start >= length) throw new RuntimeError(paren, "String index out of range: start index is too big.");
+            if (end > length) throw new RuntimeError(paren, "String index out of range: end index is too big.");
+            start = (start + length) % length;
+            if (end != length) end = (end + length) % length;
             if (start < 0) throw new RuntimeError(paren, "String index out of range: start index is very negative.");
             if (end < 0) throw new RuntimeError(paren, "String index out of range: end index is very negative.");
-            return new stringInstance(str.substring(start, end));
-        }
-
-        private boolean checkInt(Object obj) {
-            if (!(obj instanceof Double)) return false;
-            double n = (double) obj;
-            if (n % 1 != 0) return false;
-            return true;
+            if (end < start) throw new RuntimeError(paren, "String index out of range: end index is before start index.");
+            return new stringInstance(string.source, string.start + start * string.step, string.step, end - start);
         }
 
     }
 
-    class reverse implements MerlinCallable {
+    static class reverse extends NativeMethod {
 
-        @Override
-        public int arity() {
-            return 0;
+        reverse() {
+            super("reverse", 0);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
-            return new stringInstance(new StringBuilder(str).reverse().toString());
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            return ((stringInstance) receiver).reversed();
         }
 
     }
 
-    class split implements MerlinCallable {
+    static class split extends NativeMethod {
 
-        @Override
-        public int arity() {
-            return -1;
+        split() {
+            super("split", -1);
         }
 
         @Override
-        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
             String regex = " ";
-            if (arguments.size() == 1) {
-                Object obj = arguments.get(0);
-                if (!(obj instanceof String)) 
+            if (arguments.length == 1) {
+                Object obj = arguments[0];
+                if (!(obj instanceof String))
                     throw new RuntimeError(paren, "Argument regex must be string.");
-                
+
                 regex = (String) obj;
             }
-            return new MerlinListInstance(new ArrayList<>(Arrays.asList(str.split(regex))));
+            return new MerlinListInstance(new ArrayList<>(Arrays.asList(receiver.toString().split(regex))));
+        }
+
+    }
+
+    /// the characters as a plain string, read as a field
+    static class _str extends NativeMethod {
+
+        _str() {
+            super("_str", 0);
+        }
+
+        @Override
+        public Object read(Object receiver) {
+            return receiver.toString();
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, Object receiver, Object[] arguments, Token paren) {
+            throw new RuntimeError(paren, "The call operator can only be used on function and class objects");
         }
 
     }
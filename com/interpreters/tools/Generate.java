@@ -26,40 +26,43 @@ public class Generate {
         
         defineAST(outputDir, "Expr",  Arrays.asList(
             "Literal    : Object value",
-            "Unary      : Token operation, Expr right",
+            "Unary      : Token operation, Expr right | int kind",
             "Grouping   : Expr expression",
-            "Binary     : Expr left, Token operation, Expr right",
-            "Variable   : Token name",
+            "Binary     : Expr left, Token operation, Expr right | int kind",
+            "Variable   : Token name | int depth, int slot",
             "Assign     : Expr.VariableExpr object, Expr value",
+            "Compound   : Expr target, Token operation, Expr value | int kind, InlineCache cache",
             "Logic      : Expr left, Token operation, Expr right",
-            "Call       : Expr callee, Token paren, List<Expr> arguments",
-            "Function   : Token paren, List<Token> parameters, List<Stmt> body",
-            "Get        : Expr object, Token property",
-            "Set        : Expr object, Token property, Expr value",
-            "This       : Token keyword",
-            "Super      : Token keyword, Token property",
-            "SuperCall  : Token keyword, List<Expr> arguments",
+            "Call       : Expr callee, Token paren, List<Expr> arguments | MerlinCallable checked",
+            "Function   : Token paren, List<Token> parameters, List<Stmt> body | int size, boolean method, int invocations, int backEdges, int deoptimizations, boolean uncompilable, boolean captures, CompiledCode compiled, boolean generator",
+            "Get        : Expr object, Token property | InlineCache cache",
+            "Set        : Expr object, Token property, Expr value | InlineCache cache",
+            "This       : Token keyword | int depth, int slot",
+            "Super      : Token keyword, Token property | int depth, int thisDepth, int thisSlot",
+            "SuperCall  : Token keyword, List<Expr> arguments | int depth, int thisDepth, int thisSlot",
             "List       : Token bracket, List<Expr> elements",
             "ListCompr  : Token bracket, Expr expr, Stmt.ForEachStmt forComprehension, Expr filter",
             "ListGet    : Expr object, Token bracket, Expr index",
             "ListSet    : Expr.ListGetExpr getter, Expr value",
+            "Slice      : Expr object, Token bracket, Expr start, Expr end, Expr step",
             "Ternary    : Expr condition, Expr left, Expr right"
         ));
         
         defineAST(outputDir, "Stmt",  Arrays.asList(
             "Expression : Expr expression",
-            "Block      : List<Stmt> statements",
-            "IF         : Expr condition, Stmt thenBranch, Stmt elseBranch",
-            "WHILE      : Expr condition, Stmt body",
-            "FOR        : Stmt initializer, Expr condition, Expr increment, Stmt body",
-            "RETURN     : Token keyword, Expr value",
-            "ForEach    : Expr.VariableExpr iter, Token in, Expr iterable, Stmt body",
-
-            "VarDecl    : List<Token> names, List<Expr> initializers",
-            "FunDecl    : Token name, Expr.FunctionExpr description",
-            "ClassDecl  : Token name, Expr.VariableExpr superclass, List<FunDeclStmt> methods",
-            "Import     : Token from, List<String> dirs, Token keyword, Token libname, Token alias",
-            "Enum       : Token name, List<Token> consts"
+            "Block      : List<Stmt> statements | int size, boolean yields",
+            "IF         : Expr condition, Stmt thenBranch, Stmt elseBranch | boolean yields",
+            "WHILE      : Expr condition, Stmt body | Expr.FunctionExpr function, CompiledCode compiled, boolean yields",
+            "FOR        : Stmt initializer, Expr condition, Expr increment, Stmt body | Expr.FunctionExpr function, CompiledCode compiled, boolean yields",
+            "RETURN     : Token keyword, Expr value | boolean tail",
+            "Yield      : Token keyword, Expr value",
+            "ForEach    : Expr.VariableExpr iter, Token in, Expr iterable, Stmt body | Expr.FunctionExpr function, CompiledCode compiled, boolean yields",
+
+            "VarDecl    : List<Token> names, List<Expr> initializers | int[] slots",
+            "FunDecl    : Token name, Expr.FunctionExpr description | int slot",
+            "ClassDecl  : Token name, Expr.VariableExpr superclass, List<FunDeclStmt> methods | int slot",
+            "Import     : Token from, List<String> dirs, Token keyword, Token libname, Token alias | int slot",
+            "Enum       : Token name, List<Token> consts | int slot"
         ));
     }
 
@@ -85,7 +88,12 @@ public class Generate {
             for (String type : types) {
                 String className = type.split(":")[0].trim() + baseName;
                 String fields = type.split(":")[1].trim();
-                defineType(writer, baseName, className, fields);
+                String resolved = null;
+                if (fields.contains("|")) {
+                    resolved = fields.split("\\|")[1].trim();
+                    fields = fields.split("\\|")[0].trim();
+                }
+                defineType(writer, baseName, className, fields, resolved);
                 writer.println("\n\n");
             }
             writer.println("");
@@ -96,7 +104,8 @@ public class Generate {
             writer.close();
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fields) {
+    /// fields after '|' are not set by the parser, the Resolver and the Interpreter fill them in later
+    private static void defineType(PrintWriter writer, String baseName, String className, String fields, String resolved) {
         writer.println(commonSeparator + "public static class " + className + " extends " + baseName + "{");
         writer.println(insiderSeparator + "public " + className + "(" + fields + ") {");
         for (String field : fields.split(",")) {
@@ -115,6 +124,11 @@ public class Generate {
         for (String field : fields.split(",")) {
             writer.println(insiderSeparator + "public final " + field + ";");
         }
+        if (resolved != null) {
+            for (String field : resolved.split(",")) {
+                writer.println(insiderSeparator + "public " + field.trim() + ";");
+            }
+        }
 
         writer.println(commonSeparator + "}");
     }